@@ -0,0 +1,44 @@
+package pl.syntaxerr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+final class BenchmarkData {
+    private static final String NAME_ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 .-_()[]ąęłóśżź";
+
+    private BenchmarkData() {
+    }
+
+    static List<String> blacklist(int size, long seed) {
+        List<String> words = new ArrayList<>(FileRenamer.DEFAULT_FORBIDDEN_WORDS.subList(0, Math.min(size, FileRenamer.DEFAULT_FORBIDDEN_WORDS.size())));
+        SplittableRandom random = new SplittableRandom(seed);
+        while (words.size() < size) {
+            words.add("[" + randomText(random, 4 + random.nextInt(12)).replace('[', 'x').replace(']', 'y') + "." + (random.nextBoolean() ? "com" : "pl") + "]");
+        }
+        return words;
+    }
+
+    static String[] names(List<String> blacklist, int count, int meanLength, double dirtyRatio, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = Math.max(1, meanLength / 2 + random.nextInt(meanLength + 1));
+            StringBuilder name = new StringBuilder(randomText(random, length));
+            if (random.nextDouble() < dirtyRatio) {
+                String word = blacklist.get(random.nextInt(blacklist.size()));
+                name.insert(random.nextInt(name.length() + 1), random.nextBoolean() ? word : word.toUpperCase());
+            }
+            names[i] = name.append(".mkv").toString();
+        }
+        return names;
+    }
+
+    static String randomText(SplittableRandom random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(NAME_ALPHABET.charAt(random.nextInt(NAME_ALPHABET.length())));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,126 @@
+package pl.syntaxerr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class HistoryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class AppendState {
+        @Param({"none", "group-commit"})
+        public String durability;
+
+        Path directory;
+        HistoryJournal journal;
+        Path oldPath;
+        Path newPath;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("tfnc-history-append");
+            journal = new HistoryStore(directory.resolve("history.txt")).openSession(directory, HistoryJournal.Durability.parse(durability));
+            oldPath = directory.resolve("Movie [rarbg.to] (2020) 1080p.mkv");
+            newPath = directory.resolve("Movie (2020) 1080p.mkv");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            journal.close();
+            deleteRecursively(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ReadState {
+        @Param({"1000000"})
+        public int lines;
+
+        Path directory;
+        HistoryStore store;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("tfnc-history-read");
+            Path historyFile = directory.resolve("history.txt");
+            int perSession = Math.max(1, lines / 100);
+            try (BufferedWriter writer = Files.newBufferedWriter(historyFile, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < lines; i++) {
+                    if (i % perSession == 0) {
+                        writer.write(HistoryFormat.sessionLine(i / perSession + 1L, Instant.ofEpochSecond(i), directory));
+                        writer.newLine();
+                    }
+                    Path dir = directory.resolve("Show " + (i / 50));
+                    writer.write(HistoryFormat.structuredLine(dir.resolve("episode " + i + " [rarbg.to].mkv"), dir.resolve("episode " + i + ".mkv")));
+                    writer.newLine();
+                }
+            }
+            store = new HistoryStore(historyFile);
+            store.sessions();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public void appendRename(AppendState state) throws IOException {
+        state.journal.recordRename(state.oldPath, state.newPath);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Fork(1)
+    public List<HistoryEntry> readAllEntries(ReadState state) throws IOException {
+        return state.store.readEntries(HistorySelection.ALL);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Fork(1)
+    public List<HistoryEntry> readLastSession(ReadState state) throws IOException {
+        return state.store.readEntries(new HistorySelection(null, true, null));
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package pl.syntaxerr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameCleaningBenchmark {
+    private static final int NAMES = 4096;
+
+    @Param({"22", "1000", "50000"})
+    public int blacklistSize;
+
+    @Param({"16", "64", "200"})
+    public int nameLength;
+
+    @Param({"0.1", "0.9"})
+    public double dirtyRatio;
+
+    private List<String> blacklist;
+    private ForbiddenWordsMatcher matcher;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        blacklist = BenchmarkData.blacklist(blacklistSize, 7);
+        matcher = ForbiddenWordsMatcher.compile(blacklist);
+        names = BenchmarkData.names(blacklist, NAMES, nameLength, dirtyRatio, 11);
+    }
+
+    @Benchmark
+    public String cleanName() {
+        String name = names[next++ & (NAMES - 1)];
+        String cleaned = matcher.clean(name);
+        return cleaned.equals(name) ? name : cleaned.trim();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void compileMatcher(Blackhole blackhole) {
+        blackhole.consume(ForbiddenWordsMatcher.compile(blacklist));
+    }
+}
@@ -0,0 +1,45 @@
+package pl.syntaxerr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseForbiddenWordsBenchmark {
+
+    @Param({"1000", "100000"})
+    public int lines;
+
+    private String input;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder();
+        int index = 0;
+        for (String word : BenchmarkData.blacklist(lines, 3)) {
+            text.append(index++ % 10 == 0 ? "\"" + word + " \"" : word).append(index % 2 == 0 ? "\n" : "\r\n");
+        }
+        input = text.toString();
+    }
+
+    @Benchmark
+    public List<String> parseForbiddenWords() {
+        return FileRenamer.parseForbiddenWords(input);
+    }
+}
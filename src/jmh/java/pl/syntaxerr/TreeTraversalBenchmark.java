@@ -0,0 +1,100 @@
+package pl.syntaxerr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+public class TreeTraversalBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TreeState {
+        // "sequential" or the worker count of the parallel traversal.
+        @Param({"sequential", "1", "4", "8"})
+        public String traversal;
+
+        @Param({"20"})
+        public int shows;
+
+        @Param({"10"})
+        public int seasons;
+
+        @Param({"50"})
+        public int episodes;
+
+        Path root;
+        TreeTraversal walker;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            root = Files.createTempDirectory("tfnc-traversal");
+            for (int show = 0; show < shows; show++) {
+                Path showDir = root.resolve("Show " + show + " [rarbg.to]");
+                for (int season = 0; season < seasons; season++) {
+                    Path seasonDir = Files.createDirectories(showDir.resolve("Season " + season));
+                    for (int episode = 0; episode < episodes; episode++) {
+                        Files.createFile(seasonDir.resolve("e" + episode + " [rarbg.to] 1080p.mkv"));
+                    }
+                }
+            }
+            walker = traversal.equals("sequential")
+                    ? new SequentialTreeTraversal()
+                    : new ParallelTreeTraversal(Integer.parseInt(traversal));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    @Fork(1)
+    public long walkTree(TreeState state) throws IOException {
+        LongAdder visited = new LongAdder();
+        state.walker.walk(state.root, new TreeTraversal.Visitor() {
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                visited.increment();
+            }
+
+            @Override
+            public void leaveDirectory(Path dir) {
+                visited.increment();
+            }
+
+            @Override
+            public void visitFailed(Path path, IOException exc) {
+                throw new UncheckedIOException(exc);
+            }
+        });
+        return visited.sum();
+    }
+}
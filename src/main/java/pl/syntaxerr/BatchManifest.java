@@ -0,0 +1,72 @@
+package pl.syntaxerr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+final class BatchManifest {
+    private static final Logger LOGGER = Logger.getLogger(BatchManifest.class.getName());
+    static final String STDIN = "-";
+
+    record RootResult(Path root, long visited, long renamed, long skipped, long errored, long millis, String failure) {
+        boolean failed() {
+            return failure != null;
+        }
+    }
+
+    private BatchManifest() {
+    }
+
+    static List<Path> read(String source, InputStream stdin) throws IOException {
+        String text = STDIN.equals(source)
+                ? new String(stdin.readAllBytes(), StandardCharsets.UTF_8)
+                : Files.readString(Path.of(source), StandardCharsets.UTF_8);
+        return parse(text);
+    }
+
+    // A root inside another listed root is dropped: the outer walk already covers it, and two walks renaming the same
+    // entries at once would race (and renaming a directory in the outer walk would move the inner walk's root).
+    static List<Path> parse(String text) {
+        Set<Path> roots = new LinkedHashSet<>();
+        for (String line : text.split("\\R")) {
+            String root = line.strip();
+            if (root.isEmpty() || root.startsWith("#")) {
+                continue;
+            }
+            roots.add(Path.of(root).toAbsolutePath().normalize());
+        }
+
+        List<Path> outermost = new ArrayList<>(roots.size());
+        for (Path root : roots) {
+            Path enclosing = null;
+            for (Path ancestor = root.getParent(); ancestor != null && enclosing == null; ancestor = ancestor.getParent()) {
+                if (roots.contains(ancestor)) {
+                    enclosing = ancestor;
+                }
+            }
+            if (enclosing == null) {
+                outermost.add(root);
+            } else {
+                LOGGER.warning("Pominięto katalog " + root + ", bo leży w katalogu " + enclosing + " z tej samej listy.");
+            }
+        }
+        return outermost;
+    }
+
+    static Path commonAncestor(List<Path> roots) {
+        Path common = roots.getFirst();
+        for (Path root : roots) {
+            while (common != null && !root.startsWith(common)) {
+                common = common.getParent();
+            }
+        }
+        return common != null ? common : roots.getFirst().getRoot();
+    }
+}
@@ -0,0 +1,72 @@
+package pl.syntaxerr;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bounded LRU of cleaned names for one compiled ruleset. Names such as "Sample" or "Subs" repeat under every release,
+// so most lookups skip the blacklist scan. The map is split into segments to keep parallel walks from contending.
+final class CleanedNameCache {
+    static final int DEFAULT_CAPACITY = 65_536;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_CAPACITY = 1_024;
+
+    private final ForbiddenWordsMatcher matcher;
+    private final Segment[] segments;
+
+    @SuppressWarnings("serial")
+    private static final class Segment extends LinkedHashMap<String, String> {
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    CleanedNameCache(ForbiddenWordsMatcher matcher, int capacity) {
+        this.matcher = matcher;
+        int count = capacity == 0 ? 0 : Math.clamp(capacity / MIN_SEGMENT_CAPACITY, 1, MAX_SEGMENTS);
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+    }
+
+    String clean(String name, RunMetrics metrics) {
+        if (segments.length == 0) {
+            return matcher.clean(name);
+        }
+
+        Segment segment = segments[Math.floorMod(name.hashCode() ^ (name.hashCode() >>> 16), segments.length)];
+        String cleaned;
+        synchronized (segment) {
+            cleaned = segment.get(name);
+        }
+        if (cleaned != null) {
+            metrics.increment(RunMetrics.Counter.NAME_CACHE_HIT);
+            return cleaned;
+        }
+
+        metrics.increment(RunMetrics.Counter.NAME_CACHE_MISS);
+        cleaned = matcher.clean(name);
+        synchronized (segment) {
+            segment.put(name, cleaned.equals(name) ? name : cleaned);
+        }
+        return cleaned;
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+}
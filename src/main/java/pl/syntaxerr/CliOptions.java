@@ -0,0 +1,303 @@
+package pl.syntaxerr;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+final class CliOptions {
+    private static final String PARALLEL_OPTION = "--parallel";
+    private static final String DURABILITY_OPTION = "--durability";
+    private static final String LOG_LEVEL_OPTION = "--log-level";
+    private static final String SESSION_OPTION = "--session";
+    private static final String LAST_SESSION_OPTION = "--last-session";
+    private static final String PREFIX_OPTION = "--prefix";
+    private static final String DRY_RUN_OPTION = "--dry-run";
+    private static final String PLAN_OPTION = "--plan";
+    private static final String INCREMENTAL_OPTION = "--incremental";
+    private static final String DEBOUNCE_OPTION = "--debounce";
+    private static final String METRICS_OPTION = "--metrics";
+    private static final String BATCH_OPTION = "--batch";
+    private static final String PER_DEVICE_OPTION = "--per-device";
+    private static final String NAME_CACHE_OPTION = "--name-cache";
+    private static final String SOCKET_OPTION = "--socket";
+    private static final String WORKERS_OPTION = "--workers";
+    private static final String RESUME_OPTION = "--resume";
+    private static final String CHECKPOINT_OPTION = "--checkpoint";
+    private static final String INCLUDE_OPTION = "--include";
+    private static final String EXCLUDE_OPTION = "--exclude";
+    private static final String MAX_DEPTH_OPTION = "--max-depth";
+    private static final String FILES_ONLY_OPTION = "--files-only";
+    private static final String DIRS_ONLY_OPTION = "--dirs-only";
+    private static final String PATHS_FROM_OPTION = "--paths-from";
+    static final Path DEFAULT_SOCKET = Path.of("tfnc.sock");
+
+    private final List<String> positional;
+    private final int parallelism;
+    private final HistoryJournal.Durability durability;
+    private final Level logLevel;
+    private final HistorySelection historySelection;
+    private final boolean dryRun;
+    private final boolean planned;
+    private final boolean incremental;
+    private final Duration debounce;
+    private final Path metricsFile;
+    private final String batchManifest;
+    private final int perDeviceConcurrency;
+    private final int nameCacheSize;
+    private final Path socket;
+    private final int workers;
+    private final boolean checkpoint;
+    private final boolean resume;
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final Integer maxDepth;
+    private final WalkFilter.EntryType entryType;
+    private final String pathsFrom;
+
+    private CliOptions(List<String> positional, int parallelism, HistoryJournal.Durability durability, Level logLevel,
+                       HistorySelection historySelection, boolean dryRun, boolean planned, boolean incremental,
+                       Duration debounce, Path metricsFile, String batchManifest, int perDeviceConcurrency,
+                       int nameCacheSize, Path socket, int workers, boolean checkpoint, boolean resume, List<String> includes,
+                       List<String> excludes, Integer maxDepth, WalkFilter.EntryType entryType, String pathsFrom) {
+        this.positional = positional;
+        this.parallelism = parallelism;
+        this.durability = durability;
+        this.logLevel = logLevel;
+        this.historySelection = historySelection;
+        this.dryRun = dryRun;
+        this.planned = planned;
+        this.incremental = incremental;
+        this.debounce = debounce;
+        this.metricsFile = metricsFile;
+        this.batchManifest = batchManifest;
+        this.perDeviceConcurrency = perDeviceConcurrency;
+        this.nameCacheSize = nameCacheSize;
+        this.socket = socket;
+        this.workers = workers;
+        this.checkpoint = checkpoint;
+        this.resume = resume;
+        this.includes = includes;
+        this.excludes = excludes;
+        this.maxDepth = maxDepth;
+        this.entryType = entryType;
+        this.pathsFrom = pathsFrom;
+    }
+
+    static CliOptions parse(List<String> args) {
+        List<String> positional = new ArrayList<>();
+        int parallelism = 1;
+        HistoryJournal.Durability durability = HistoryJournal.Durability.PERIODIC;
+        Level logLevel = Level.INFO;
+        Long sessionId = null;
+        boolean lastSession = false;
+        Path prefix = null;
+        boolean dryRun = false;
+        boolean planned = false;
+        boolean incremental = false;
+        Duration debounce = Duration.ofSeconds(1);
+        Path metricsFile = null;
+        String batchManifest = null;
+        int perDeviceConcurrency = 1;
+        int nameCacheSize = CleanedNameCache.DEFAULT_CAPACITY;
+        Path socket = DEFAULT_SOCKET;
+        int workers = 2;
+        boolean checkpoint = false;
+        boolean resume = false;
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        Integer maxDepth = null;
+        WalkFilter.EntryType entryType = null;
+        String pathsFrom = null;
+
+        for (String arg : args) {
+            if (PARALLEL_OPTION.equalsIgnoreCase(arg)) {
+                parallelism = Runtime.getRuntime().availableProcessors();
+            } else if (hasValue(arg, PARALLEL_OPTION)) {
+                parallelism = parsePositiveInt(PARALLEL_OPTION, optionValue(arg, PARALLEL_OPTION));
+            } else if (hasValue(arg, DURABILITY_OPTION)) {
+                durability = HistoryJournal.Durability.parse(optionValue(arg, DURABILITY_OPTION));
+            } else if (hasValue(arg, LOG_LEVEL_OPTION)) {
+                logLevel = Diagnostics.parseLevel(optionValue(arg, LOG_LEVEL_OPTION));
+            } else if (hasValue(arg, SESSION_OPTION)) {
+                sessionId = (long) parsePositiveInt(SESSION_OPTION, optionValue(arg, SESSION_OPTION));
+            } else if (LAST_SESSION_OPTION.equalsIgnoreCase(arg)) {
+                lastSession = true;
+            } else if (DRY_RUN_OPTION.equalsIgnoreCase(arg)) {
+                dryRun = true;
+            } else if (PLAN_OPTION.equalsIgnoreCase(arg)) {
+                planned = true;
+            } else if (INCREMENTAL_OPTION.equalsIgnoreCase(arg)) {
+                incremental = true;
+            } else if (CHECKPOINT_OPTION.equalsIgnoreCase(arg)) {
+                checkpoint = true;
+            } else if (RESUME_OPTION.equalsIgnoreCase(arg)) {
+                resume = true;
+            } else if (hasValue(arg, INCLUDE_OPTION)) {
+                includes.add(optionValue(arg, INCLUDE_OPTION));
+            } else if (hasValue(arg, EXCLUDE_OPTION)) {
+                excludes.add(optionValue(arg, EXCLUDE_OPTION));
+            } else if (hasValue(arg, MAX_DEPTH_OPTION)) {
+                maxDepth = WalkFilter.parseDepth(optionValue(arg, MAX_DEPTH_OPTION));
+            } else if (FILES_ONLY_OPTION.equalsIgnoreCase(arg) || DIRS_ONLY_OPTION.equalsIgnoreCase(arg)) {
+                WalkFilter.EntryType selected = FILES_ONLY_OPTION.equalsIgnoreCase(arg) ? WalkFilter.EntryType.FILES : WalkFilter.EntryType.DIRECTORIES;
+                if (entryType != null && entryType != selected) {
+                    throw new IllegalArgumentException("Opcje " + FILES_ONLY_OPTION + " i " + DIRS_ONLY_OPTION + " wykluczają się.");
+                }
+                entryType = selected;
+            } else if (hasValue(arg, DEBOUNCE_OPTION)) {
+                debounce = Duration.ofMillis(parsePositiveInt(DEBOUNCE_OPTION, optionValue(arg, DEBOUNCE_OPTION)));
+            } else if (hasValue(arg, METRICS_OPTION)) {
+                metricsFile = Path.of(optionValue(arg, METRICS_OPTION));
+            } else if (hasValue(arg, PATHS_FROM_OPTION)) {
+                pathsFrom = optionValue(arg, PATHS_FROM_OPTION);
+            } else if (hasValue(arg, BATCH_OPTION)) {
+                batchManifest = optionValue(arg, BATCH_OPTION);
+            } else if (hasValue(arg, PER_DEVICE_OPTION)) {
+                perDeviceConcurrency = parsePositiveInt(PER_DEVICE_OPTION, optionValue(arg, PER_DEVICE_OPTION));
+            } else if (hasValue(arg, NAME_CACHE_OPTION)) {
+                nameCacheSize = parseInt(NAME_CACHE_OPTION, optionValue(arg, NAME_CACHE_OPTION), 0);
+            } else if (hasValue(arg, SOCKET_OPTION)) {
+                socket = Path.of(optionValue(arg, SOCKET_OPTION));
+            } else if (hasValue(arg, WORKERS_OPTION)) {
+                workers = parsePositiveInt(WORKERS_OPTION, optionValue(arg, WORKERS_OPTION));
+            } else if (hasValue(arg, PREFIX_OPTION)) {
+                prefix = Path.of(optionValue(arg, PREFIX_OPTION)).toAbsolutePath().normalize();
+            } else {
+                positional.add(arg);
+            }
+        }
+
+        if (sessionId != null && lastSession) {
+            throw new IllegalArgumentException("Opcje " + SESSION_OPTION + " i " + LAST_SESSION_OPTION + " wykluczają się.");
+        }
+
+        if (dryRun && planned) {
+            throw new IllegalArgumentException("Opcje " + DRY_RUN_OPTION + " i " + PLAN_OPTION + " wykluczają się.");
+        }
+
+        if (incremental && (dryRun || planned)) {
+            throw new IllegalArgumentException("Opcja " + INCREMENTAL_OPTION + " nie działa z " + DRY_RUN_OPTION + " ani " + PLAN_OPTION + ".");
+        }
+
+        if (batchManifest != null && (dryRun || planned || incremental)) {
+            throw new IllegalArgumentException("Opcja " + BATCH_OPTION + " nie działa z " + DRY_RUN_OPTION + ", " + PLAN_OPTION + " ani " + INCREMENTAL_OPTION + ".");
+        }
+
+        checkpoint |= resume;
+        if (checkpoint && (dryRun || planned || batchManifest != null)) {
+            throw new IllegalArgumentException("Opcje " + CHECKPOINT_OPTION + " i " + RESUME_OPTION + " nie działają z " + DRY_RUN_OPTION + ", " + PLAN_OPTION + " ani " + BATCH_OPTION + ".");
+        }
+
+        if (pathsFrom != null && (dryRun || planned || incremental || checkpoint || batchManifest != null)) {
+            throw new IllegalArgumentException("Opcja " + PATHS_FROM_OPTION + " nie działa z " + DRY_RUN_OPTION + ", " + PLAN_OPTION + ", "
+                    + INCREMENTAL_OPTION + ", " + CHECKPOINT_OPTION + ", " + RESUME_OPTION + " ani " + BATCH_OPTION + ".");
+        }
+
+        return new CliOptions(List.copyOf(positional), parallelism, durability, logLevel,
+                new HistorySelection(sessionId, lastSession, prefix), dryRun, planned, incremental, debounce, metricsFile,
+                batchManifest, perDeviceConcurrency, nameCacheSize, socket, workers, checkpoint, resume, List.copyOf(includes),
+                List.copyOf(excludes), maxDepth, entryType, pathsFrom);
+    }
+
+    private static boolean hasValue(String arg, String option) {
+        return arg.regionMatches(true, 0, option + "=", 0, option.length() + 1);
+    }
+
+    private static String optionValue(String arg, String option) {
+        return arg.substring(option.length() + 1);
+    }
+
+    private static int parsePositiveInt(String option, String value) {
+        return parseInt(option, value, 1);
+    }
+
+    private static int parseInt(String option, String value, int min) {
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= min) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Nieprawidłowa wartość dla " + option + ": " + value);
+    }
+
+    List<String> positional() {
+        return positional;
+    }
+
+    int parallelism() {
+        return parallelism;
+    }
+
+    HistoryJournal.Durability durability() {
+        return durability;
+    }
+
+    Level logLevel() {
+        return logLevel;
+    }
+
+    HistorySelection historySelection() {
+        return historySelection;
+    }
+
+    boolean dryRun() {
+        return dryRun;
+    }
+
+    boolean planned() {
+        return planned;
+    }
+
+    boolean incremental() {
+        return incremental;
+    }
+
+    Duration debounce() {
+        return debounce;
+    }
+
+    Path metricsFile() {
+        return metricsFile;
+    }
+
+    String batchManifest() {
+        return batchManifest;
+    }
+
+    int perDeviceConcurrency() {
+        return perDeviceConcurrency;
+    }
+
+    int nameCacheSize() {
+        return nameCacheSize;
+    }
+
+    Path socket() {
+        return socket;
+    }
+
+    int workers() {
+        return workers;
+    }
+
+    boolean checkpoint() {
+        return checkpoint;
+    }
+
+    boolean resume() {
+        return resume;
+    }
+
+    String pathsFrom() {
+        return pathsFrom;
+    }
+
+    WalkFilter walkFilter(WalkFilter fromFile) {
+        return fromFile.withOverrides(includes, excludes, maxDepth, entryType);
+    }
+}
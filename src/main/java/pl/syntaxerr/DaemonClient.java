@@ -0,0 +1,70 @@
+package pl.syntaxerr;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+final class DaemonClient {
+    private static final Logger LOGGER = Logger.getLogger(DaemonClient.class.getName());
+
+    private DaemonClient() {
+    }
+
+    static int submit(Path socket, List<String> args, PrintStream out) throws IOException {
+        for (String arg : args) {
+            if (arg.indexOf('\t') >= 0 || arg.indexOf('\n') >= 0 || arg.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Argument zadania nie może zawierać tabulatora ani nowej linii: " + arg);
+            }
+        }
+
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            writer.write(String.join("\t", args) + "\n");
+            writer.flush();
+
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                String kind = tab < 0 ? line : line.substring(0, tab);
+                String text = tab < 0 ? "" : line.substring(tab + 1);
+                switch (kind) {
+                    case DaemonServer.OUT -> out.println(text);
+                    case DaemonServer.STATUS -> LOGGER.info(text);
+                    case DaemonServer.ERROR -> LOGGER.severe(text);
+                    case DaemonServer.EXIT -> {
+                        out.flush();
+                        return Integer.parseInt(text.trim());
+                    }
+                    default -> LOGGER.warning("Nieznana odpowiedź demona: " + line);
+                }
+            }
+        }
+        throw new IOException("Demon zamknął połączenie przed zakończeniem zadania.");
+    }
+
+    // The daemon runs in its own working directory, so paths are resolved on the client side first.
+    static List<String> resolvePaths(List<String> args) {
+        List<String> resolved = new ArrayList<>(args.size());
+        int positional = 0;
+        for (String arg : args) {
+            if (arg.regionMatches(true, 0, "--prefix=", 0, "--prefix=".length())) {
+                resolved.add("--prefix=" + Path.of(arg.substring("--prefix=".length())).toAbsolutePath().normalize());
+            } else if (arg.startsWith("--")) {
+                resolved.add(arg);
+            } else {
+                resolved.add(positional++ == 1 ? Path.of(arg).toAbsolutePath().normalize().toString() : arg);
+            }
+        }
+        return resolved;
+    }
+}
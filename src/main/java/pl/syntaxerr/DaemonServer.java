@@ -0,0 +1,332 @@
+package pl.syntaxerr;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+// Keeps a warm JVM and compiled rulesets between jobs submitted by DaemonClient over a Unix domain socket.
+// Requests are one tab-separated line: the job type followed by the usual CLI arguments. Responses are lines of
+// "KIND<TAB>text" ending with "EXIT<TAB>code".
+final class DaemonServer implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(DaemonServer.class.getName());
+    static final String JOB_CLEAN = "clean";
+    static final String JOB_DRY_RUN = "dry-run";
+    static final String JOB_UNDO = "undo";
+    static final String STATUS = "STATUS";
+    static final String OUT = "OUT";
+    static final String ERROR = "ERROR";
+    static final String EXIT = "EXIT";
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_BUSY = 75;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int MAX_RULESETS = 8;
+
+    private record Ruleset(List<String> words, CleanedNameCache names) {
+    }
+
+    private static final class Connection {
+        private final Writer writer;
+        private boolean open = true;
+
+        private Connection(SocketChannel channel) {
+            this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+        }
+
+        // A client that went away must not abort the job it submitted.
+        private synchronized void send(String kind, String text) {
+            if (!open) {
+                return;
+            }
+            try {
+                for (String line : text.split("\\R", -1)) {
+                    writer.write(kind + "\t" + line + "\n");
+                }
+                writer.flush();
+            } catch (IOException ex) {
+                open = false;
+            }
+        }
+    }
+
+    private final Path socket;
+    private final CliOptions defaults;
+    private final ServerSocketChannel server;
+    private final ThreadPoolExecutor workers;
+    private final ThreadLocal<FileRenamer> renamers;
+    private final List<FileRenamer> createdRenamers = new CopyOnWriteArrayList<>();
+    private final ReentrantLock historyLock = new ReentrantLock();
+    private final Path blacklistFile = Path.of("blacklist.txt");
+    private final Map<List<String>, Ruleset> rulesets = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, Ruleset> eldest) {
+            return size() > MAX_RULESETS;
+        }
+    };
+    private List<String> blacklist;
+    private FileTime blacklistModified;
+
+    DaemonServer(CliOptions options) throws IOException {
+        this.socket = options.socket().toAbsolutePath().normalize();
+        this.defaults = options;
+        if (Files.exists(socket)) {
+            if (isListening(socket)) {
+                throw new IOException("Demon już działa na gnieździe " + socket);
+            }
+            Files.delete(socket);
+        }
+
+        server = bindPrivately(socket);
+
+        AtomicInteger threads = new AtomicInteger();
+        workers = new ThreadPoolExecutor(options.workers(), options.workers(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "tfnc-daemon-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        renamers = ThreadLocal.withInitial(() -> {
+            FileRenamer renamer = new FileRenamer();
+            renamer.setParallelism(defaults.parallelism());
+            renamer.setHistoryDurability(defaults.durability());
+            renamer.setLogLevel(defaults.logLevel());
+            renamer.setMetricsFile(defaults.metricsFile());
+            renamer.setNameCacheSize(defaults.nameCacheSize());
+            createdRenamers.add(renamer);
+            return renamer;
+        });
+    }
+
+    // Anyone who can connect may submit jobs that run with the daemon's privileges, so the socket must never be reachable
+    // with umask permissions: it is bound inside a fresh 0700 directory, restricted to the owner and only then moved into
+    // place (a rename keeps the socket bound).
+    private static ServerSocketChannel bindPrivately(Path socket) throws IOException {
+        Path staging;
+        try {
+            staging = Files.createTempDirectory(socket.getParent(), ".tfnc-sock",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException ex) {
+            // not a POSIX file system; access is governed by the directory's ACL
+            ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socket));
+            return server;
+        }
+
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        Path staged = staging.resolve(socket.getFileName());
+        try {
+            server.bind(UnixDomainSocketAddress.of(staged));
+            Files.setPosixFilePermissions(staged, PosixFilePermissions.fromString("rw-------"));
+            Files.move(staged, socket, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ex) {
+            server.close();
+            Files.deleteIfExists(staged);
+            throw ex;
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+        return server;
+    }
+
+    private static boolean isListening(Path socket) {
+        try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    Path socket() {
+        return socket;
+    }
+
+    void serve() throws IOException {
+        LOGGER.info("Demon nasłuchuje na " + socket + " (wątki robocze=" + workers.getMaximumPoolSize() + ").");
+        while (server.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException ex) {
+                return;
+            }
+            Thread.ofVirtual().name("tfnc-daemon-connection").start(() -> handle(channel));
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            String request = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8)).readLine();
+            if (request == null) {
+                return;
+            }
+            Connection connection = new Connection(channel);
+            List<String> args = List.of(request.split("\t", -1));
+
+            Future<Integer> result;
+            try {
+                connection.send(STATUS, "Zadanie przyjęte (przed nim w kolejce: " + (workers.getQueue().size() + workers.getActiveCount()) + ").");
+                result = workers.submit(() -> run(args, connection));
+            } catch (RejectedExecutionException ex) {
+                connection.send(ERROR, "Kolejka zadań demona jest pełna, spróbuj ponownie później.");
+                connection.send(EXIT, String.valueOf(EXIT_BUSY));
+                return;
+            }
+
+            int code;
+            try {
+                code = result.get();
+            } catch (ExecutionException ex) {
+                LOGGER.severe("Zadanie demona zakończyło się błędem: " + ex.getCause());
+                connection.send(ERROR, String.valueOf(ex.getCause().getMessage()));
+                code = EXIT_FAILED;
+            }
+            connection.send(EXIT, String.valueOf(code));
+        } catch (IOException ex) {
+            LOGGER.warning("Błąd połączenia z klientem demona: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int run(List<String> args, Connection connection) throws IOException {
+        String job = args.getFirst();
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args.subList(1, args.size()));
+        } catch (IllegalArgumentException ex) {
+            connection.send(ERROR, ex.getMessage());
+            return EXIT_USAGE;
+        }
+        List<String> positional = options.positional();
+        if (positional.isEmpty()) {
+            connection.send(ERROR, "Zadanie wymaga katalogu: " + JOB_CLEAN + "|" + JOB_DRY_RUN + "|" + JOB_UNDO + " [opcje] <katalog> [dodatkowe-zakazane-słowo] ...");
+            return EXIT_USAGE;
+        }
+        String directory = positional.getFirst();
+        if (!Files.isDirectory(Path.of(directory))) {
+            connection.send(ERROR, "Podana ścieżka nie jest katalogiem: " + directory);
+            return EXIT_FAILED;
+        }
+
+        FileRenamer renamer = renamers.get();
+        renamer.setWalkFilter(options.walkFilter(renamer.readWalkFilterFromFile()));
+        connection.send(STATUS, "Start zadania " + job + ": " + directory);
+        switch (job) {
+            case JOB_CLEAN, JOB_DRY_RUN -> {
+                Ruleset ruleset = ruleset(renamer, positional.subList(1, positional.size()));
+                if (ruleset.words().isEmpty()) {
+                    connection.send(ERROR, "Brak zakazanych słów. Uzupełnij blacklist.txt lub podaj dodatkowe słowa.");
+                    return EXIT_USAGE;
+                }
+                if (JOB_DRY_RUN.equals(job) || options.dryRun()) {
+                    RenamePlan plan = renamer.planRenames(directory, ruleset.names());
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    plan.print(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+                    buffer.toString(StandardCharsets.UTF_8).lines().forEach(line -> connection.send(OUT, line));
+                    renamer.publishMetrics();
+                } else {
+                    historyLock.lock();
+                    try {
+                        renamer.setIncremental(options.incremental());
+                        if (options.planned()) {
+                            renamer.applyPlan(directory, renamer.planRenames(directory, ruleset.names()));
+                        } else {
+                            renamer.renameFilesAndDirectoriesInDirectory(directory, ruleset.words(), ruleset.names());
+                        }
+                    } finally {
+                        historyLock.unlock();
+                    }
+                }
+            }
+            case JOB_UNDO -> {
+                historyLock.lock();
+                try {
+                    renamer.undoRenamesFromHistory(directory, options.historySelection());
+                } finally {
+                    historyLock.unlock();
+                }
+            }
+            default -> {
+                connection.send(ERROR, "Nieznany typ zadania: " + job + " (dostępne: " + JOB_CLEAN + ", " + JOB_DRY_RUN + ", " + JOB_UNDO + ")");
+                return EXIT_USAGE;
+            }
+        }
+
+        RunMetrics metrics = renamer.lastRunMetrics();
+        connection.send(STATUS, metrics.summary());
+        return metrics.count(RunMetrics.Counter.ERRORED) > 0 ? EXIT_FAILED : EXIT_OK;
+    }
+
+    // The blacklist is re-read only when blacklist.txt changes; compiled rulesets are reused across jobs.
+    private synchronized Ruleset ruleset(FileRenamer renamer, List<String> extraWords) {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(blacklistFile);
+        } catch (IOException ex) {
+            modified = null;
+        }
+        if (blacklist == null || !Objects.equals(modified, blacklistModified)) {
+            blacklist = renamer.readForbiddenWordsFromFile();
+            blacklistModified = modified;
+            rulesets.clear();
+        }
+
+        LinkedHashSet<String> merged = new LinkedHashSet<>(blacklist);
+        merged.addAll(extraWords);
+        List<String> words = List.copyOf(merged);
+        return rulesets.computeIfAbsent(words,
+                key -> new Ruleset(key, new CleanedNameCache(ForbiddenWordsMatcher.compile(key), defaults.nameCacheSize())));
+    }
+
+    // Stops accepting connections so serve() returns; close() waits for the running jobs and removes the socket.
+    void shutdown() throws IOException {
+        server.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        shutdown();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.warning("Nie wszystkie zadania demona zakończyły się przed zamknięciem.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        createdRenamers.forEach(FileRenamer::close);
+        Files.deleteIfExists(socket);
+    }
+}
@@ -0,0 +1,265 @@
+package pl.syntaxerr;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Every error reaches error.txt: when the queue is full, error() waits for the writer instead of dropping the event.
+// Informational messages may only use the part of the queue not reserved for errors and are dropped (and counted) first.
+// The console shows the first REPEAT_LIMIT errors of each kind, so a walk over tens of thousands of unreadable
+// directories does not flood it; the rest are summarized per kind on flush.
+final class Diagnostics implements AutoCloseable {
+    private static final int CAPACITY = 8192;
+    private static final int ERROR_RESERVE = CAPACITY / 4;
+    private static final int MAX_BATCH = 256;
+    private static final int REPEAT_LIMIT = 100;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private record Event(Level level, String message, boolean log, boolean persist, CountDownLatch flushed) {
+    }
+
+    private static final Event STOP = new Event(Level.OFF, "", false, false, null);
+
+    private final Path errorFile;
+    private final Logger logger;
+    private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final Map<String, AtomicLong> occurrences = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile Level level = Level.INFO;
+    private volatile boolean closed;
+    private BufferedWriter errorWriter;
+
+    Diagnostics(Path errorFile, Logger logger) {
+        this.errorFile = errorFile;
+        this.logger = logger;
+        writer = new Thread(this::writeLoop, "tfnc-diagnostics");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    static Level parseLevel(String value) {
+        try {
+            return Level.parse(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Nieznany poziom logowania: " + value);
+        }
+    }
+
+    void setLevel(Level level) {
+        this.level = level;
+    }
+
+    void error(String kind, String message) {
+        long count = occurrences.computeIfAbsent(kind, key -> new AtomicLong()).incrementAndGet();
+        put(new Event(Level.SEVERE, message, count <= REPEAT_LIMIT, true, null));
+    }
+
+    void info(String message) {
+        if (!isLoggable(Level.INFO)) {
+            return;
+        }
+        if (closed) {
+            logger.info(message);
+        } else if (queue.remainingCapacity() <= ERROR_RESERVE || !queue.offer(new Event(Level.INFO, message, true, false, null))) {
+            dropped.increment();
+        }
+    }
+
+    private boolean isLoggable(Level eventLevel) {
+        return eventLevel.intValue() >= level.intValue();
+    }
+
+    private void put(Event event) {
+        boolean interrupted = false;
+        try {
+            while (!closed) {
+                try {
+                    if (queue.offer(event, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        // a close() racing with the offer may have stopped the writer before it took the event
+                        if (!closed || !queue.remove(event)) {
+                            return;
+                        }
+                        break;
+                    }
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            writeDirectly(event);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Used once the writer thread is stopping, so errors reported after close() are not lost.
+    private synchronized void writeDirectly(Event event) {
+        awaitWriter();
+        if (event.log && isLoggable(event.level)) {
+            logger.log(event.level, event.message);
+        }
+        if (event.persist) {
+            writeError(event.message);
+            closeErrorWriter();
+        }
+    }
+
+    void flush() {
+        if (closed) {
+            return;
+        }
+        List<Event> summary = new ArrayList<>();
+        for (String kind : occurrences.keySet()) {
+            AtomicLong counter = occurrences.remove(kind);
+            long count = counter != null ? counter.get() : 0;
+            if (count > REPEAT_LIMIT) {
+                summary.add(new Event(Level.SEVERE, "Zdarzenie '" + kind + "' wystąpiło " + count + " razy; na konsoli pokazano pierwsze "
+                        + REPEAT_LIMIT + ", wszystkie są w " + errorFile.getFileName() + ".", true, false, null));
+            }
+        }
+        long droppedEvents = dropped.sumThenReset();
+        if (droppedEvents > 0) {
+            summary.add(new Event(Level.WARNING, "Bufor diagnostyki był pełny; pominięto " + droppedEvents + " komunikatów informacyjnych.",
+                    true, false, null));
+        }
+
+        CountDownLatch flushed = new CountDownLatch(1);
+        try {
+            for (Event event : summary) {
+                queue.put(event);
+            }
+            queue.put(new Event(Level.OFF, "", false, false, flushed));
+            flushed.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Writes what is still queued, then stops the writer thread and closes error.txt.
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        try {
+            queue.put(STOP);
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitWriter() {
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Event> batch = new ArrayList<>(MAX_BATCH);
+        boolean stop = false;
+        while (true) {
+            if (stop) {
+                // events offered by producers that had not yet seen the close
+                queue.drainTo(batch, MAX_BATCH);
+                if (batch.isEmpty()) {
+                    closeErrorWriter();
+                    return;
+                }
+            } else {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException ex) {
+                    closeErrorWriter();
+                    return;
+                }
+                queue.drainTo(batch, MAX_BATCH - 1);
+            }
+
+            for (Event event : batch) {
+                if (event == STOP) {
+                    stop = true;
+                    continue;
+                }
+                if (event.flushed != null) {
+                    continue;
+                }
+                if (event.log && isLoggable(event.level)) {
+                    logger.log(event.level, event.message);
+                }
+                if (event.persist) {
+                    writeError(event.message);
+                }
+            }
+            flushErrorWriter();
+            batch.stream().filter(event -> event.flushed != null).forEach(event -> event.flushed.countDown());
+            batch.clear();
+        }
+    }
+
+    private void writeError(String message) {
+        try {
+            if (errorWriter == null) {
+                errorWriter = Files.newBufferedWriter(errorFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            errorWriter.write(message);
+            errorWriter.newLine();
+        } catch (IOException ex) {
+            closeErrorWriter();
+            logger.severe("An error occurred: " + ex.getMessage());
+        }
+    }
+
+    private void flushErrorWriter() {
+        if (errorWriter == null) {
+            return;
+        }
+        try {
+            errorWriter.flush();
+        } catch (IOException ex) {
+            closeErrorWriter();
+            logger.severe("An error occurred: " + ex.getMessage());
+        }
+    }
+
+    private void closeErrorWriter() {
+        try {
+            if (errorWriter != null) {
+                errorWriter.close();
+            }
+        } catch (IOException ignored) {
+            // the writer is reopened on the next error
+        } finally {
+            errorWriter = null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package pl.syntaxerr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Open directory handles used to rename entries relative to their parent (renameat) instead of resolving the whole
+// path again for every move. A handle is opened on the first rename in a directory and closed when the walk leaves it,
+// so a concurrent rename of an ancestor cannot redirect the remaining moves. Where SecureDirectoryStream is not
+// available (Windows, macOS) or too many handles are open, moves fall back to Files.move.
+final class DirectoryHandles implements Closeable {
+    private static final int MAX_OPEN = 256;
+    private static final Object UNSUPPORTED = new Object();
+
+    private final Map<Path, Object> open = new ConcurrentHashMap<>();
+
+    void move(Path source, Path target) throws IOException {
+        SecureDirectoryStream<Path> directory = handle(source.getParent());
+        if (directory == null || !source.getParent().equals(target.getParent())) {
+            Files.move(source, target);
+            return;
+        }
+
+        // renameat replaces an existing target, unlike Files.move without REPLACE_EXISTING.
+        Path targetName = target.getFileName();
+        try {
+            directory.getFileAttributeView(targetName, BasicFileAttributeView.class, LinkOption.NOFOLLOW_LINKS).readAttributes();
+            throw new FileAlreadyExistsException(target.toString());
+        } catch (NoSuchFileException expected) {
+            directory.move(source.getFileName(), directory, targetName);
+        }
+    }
+
+    void release(Path directory) {
+        Object handle = open.remove(directory);
+        if (handle instanceof SecureDirectoryStream<?> stream) {
+            closeQuietly(stream);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private SecureDirectoryStream<Path> handle(Path directory) {
+        if (directory == null) {
+            return null;
+        }
+        Object handle = open.get(directory);
+        if (handle == null && open.size() < MAX_OPEN) {
+            handle = open.computeIfAbsent(directory, DirectoryHandles::openHandle);
+        }
+        return handle instanceof SecureDirectoryStream<?> stream ? (SecureDirectoryStream<Path>) stream : null;
+    }
+
+    private static Object openHandle(Path directory) {
+        try {
+            DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+            if (stream instanceof SecureDirectoryStream<Path>) {
+                return stream;
+            }
+            stream.close();
+        } catch (IOException ex) {
+            // fall back to path-based moves for this directory
+        }
+        return UNSUPPORTED;
+    }
+
+    private static void closeQuietly(Closeable stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // the handle was only used for moves
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Path directory : open.keySet()) {
+            release(directory);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package pl.syntaxerr;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+// Holds listed directories back so they are renamed deepest-first, after the entries inside them. When more than
+// capacity directories are waiting, the deepest one is renamed early; its new location is remembered, so paths that
+// arrive later below it are still resolved to where they are now.
+final class DirectoryReorderBuffer {
+    static final int DEFAULT_CAPACITY = 4_096;
+    private static final Comparator<Path> DEEPEST_FIRST = Comparator.comparingInt(Path::getNameCount).reversed()
+            .thenComparing(Comparator.naturalOrder());
+
+    private final int capacity;
+    private final UnaryOperator<Path> renamer;
+    private final PriorityQueue<Path> pending = new PriorityQueue<>(DEEPEST_FIRST);
+    private final Set<Path> queued = new HashSet<>();
+    private final Map<Path, Path> moved = new HashMap<>();
+
+    DirectoryReorderBuffer(int capacity, UnaryOperator<Path> renamer) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
+        this.renamer = renamer;
+    }
+
+    Path resolve(Path path) {
+        if (moved.isEmpty()) {
+            return path;
+        }
+        Path resolved = path;
+        for (Path ancestor = resolved; ancestor != null; ancestor = ancestor.getParent()) {
+            Path target = moved.get(ancestor);
+            if (target != null) {
+                resolved = target.resolve(ancestor.relativize(resolved));
+                ancestor = target;
+            }
+        }
+        return resolved;
+    }
+
+    void add(Path directory) {
+        if (queued.add(directory)) {
+            pending.add(directory);
+        }
+        if (pending.size() > capacity) {
+            renameNext();
+        }
+    }
+
+    void flush() {
+        while (!pending.isEmpty()) {
+            renameNext();
+        }
+        moved.clear();
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    private void renameNext() {
+        Path directory = pending.poll();
+        queued.remove(directory);
+        Path renamed = renamer.apply(directory);
+        if (!renamed.equals(directory)) {
+            moved.put(directory, renamed);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package pl.syntaxerr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+final class DirectoryStateCache {
+    private static final Logger LOGGER = Logger.getLogger(DirectoryStateCache.class.getName());
+    private static final int MAGIC = 0x54464E44;
+    private static final int VERSION = 2;
+    // Coarse timestamps (FAT, some SMB servers) plus some clock skew between client and server.
+    private static final long RACY_WINDOW_NANOS = 60_000_000_000L;
+
+    // A directory listed within RACY_WINDOW_NANOS of its last modification may have changed again within the same
+    // timestamp tick, so for such directories the entry count is checked against a fresh listing as well.
+    private record DirectoryState(long modifiedNanos, long listedNanos, int entryCount, List<String> childDirectories) {
+        boolean racy() {
+            return listedNanos - modifiedNanos < RACY_WINDOW_NANOS;
+        }
+    }
+
+    private static final class PendingDirectory {
+        private final long modifiedNanos;
+        private final long listedNanos = nanos(Instant.now());
+        private final AtomicInteger entryCount = new AtomicInteger();
+        private final List<String> childDirectories = new ArrayList<>();
+        private volatile boolean failed;
+
+        private PendingDirectory(long modifiedNanos) {
+            this.modifiedNanos = modifiedNanos;
+        }
+    }
+
+    private final Path cacheFile;
+    private final String rulesetHash;
+    private final Map<Path, DirectoryState> previous;
+    private final Map<Path, DirectoryState> current = new ConcurrentHashMap<>();
+    private final Map<Path, Boolean> verified = new ConcurrentHashMap<>();
+    private final Map<Path, PendingDirectory> pending = new ConcurrentHashMap<>();
+    private final Set<Path> skipped = ConcurrentHashMap.newKeySet();
+
+    private DirectoryStateCache(Path cacheFile, String rulesetHash, Map<Path, DirectoryState> previous) {
+        this.cacheFile = cacheFile;
+        this.rulesetHash = rulesetHash;
+        this.previous = previous;
+    }
+
+    static String rulesetHash(List<String> forbiddenWords) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String word : forbiddenWords) {
+                digest.update(String.valueOf(word).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static String rulesetHash(List<String> forbiddenWords, WalkFilter filter) {
+        List<String> key = new ArrayList<>(forbiddenWords);
+        key.add("\0");
+        key.addAll(filter.rules());
+        return rulesetHash(key);
+    }
+
+    static DirectoryStateCache load(Path cacheFile, String rulesetHash) {
+        Map<Path, DirectoryState> states = new ConcurrentHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.warning("Nieznany format pamięci podręcznej katalogów, zostanie utworzona od nowa: " + cacheFile);
+                return new DirectoryStateCache(cacheFile, rulesetHash, states);
+            }
+            if (!in.readUTF().equals(rulesetHash)) {
+                LOGGER.info("Lista zakazanych słów zmieniła się od ostatniego przebiegu – pełne skanowanie.");
+                return new DirectoryStateCache(cacheFile, rulesetHash, states);
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Path dir = Path.of(in.readUTF());
+                long modifiedNanos = in.readLong();
+                long listedNanos = in.readLong();
+                int entryCount = in.readInt();
+                int children = in.readInt();
+                List<String> childDirectories = new ArrayList<>(children);
+                for (int j = 0; j < children; j++) {
+                    childDirectories.add(in.readUTF());
+                }
+                states.put(dir, new DirectoryState(modifiedNanos, listedNanos, entryCount, List.copyOf(childDirectories)));
+            }
+        } catch (NoSuchFileException ex) {
+            // first incremental run
+        } catch (IOException ex) {
+            LOGGER.warning("Nie udało się odczytać pamięci podręcznej katalogów, pełne skanowanie: " + ex.getMessage());
+            states.clear();
+        }
+        return new DirectoryStateCache(cacheFile, rulesetHash, states);
+    }
+
+    TreeTraversal.Visitor wrap(TreeTraversal.Visitor delegate) {
+        return new TreeTraversal.Visitor() {
+            @Override
+            public boolean enterDirectory(Path dir, BasicFileAttributes attrs) {
+                Path key = key(dir);
+                if (isUnchanged(key, attrs)) {
+                    skipped.add(key);
+                    countEntry(dir, true);
+                    delegate.leaveDirectory(dir);
+                    return false;
+                }
+                if (!delegate.enterDirectory(dir, attrs)) {
+                    return false;
+                }
+                pending.put(key, new PendingDirectory(nanos(attrs.lastModifiedTime())));
+                return true;
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                countEntry(file, false);
+                delegate.visitFile(file, attrs);
+            }
+
+            @Override
+            public void leaveDirectory(Path dir) {
+                Path key = key(dir);
+                PendingDirectory state = pending.remove(key);
+                if (state != null && !state.failed) {
+                    List<String> children;
+                    synchronized (state) {
+                        children = List.copyOf(state.childDirectories);
+                    }
+                    current.put(key, new DirectoryState(state.modifiedNanos, state.listedNanos, state.entryCount.get(), children));
+                }
+                countEntry(dir, true);
+                delegate.leaveDirectory(dir);
+            }
+
+            @Override
+            public void visitFailed(Path path, IOException exc) {
+                pending.remove(key(path));
+                failed(path);
+                delegate.visitFailed(path, exc);
+            }
+        };
+    }
+
+    // An entry that could not be renamed leaves its directory's modification time as it was, so the directory must not be
+    // recorded as processed; otherwise every later run would skip it and never retry the entry.
+    void failed(Path entry) {
+        Path parent = entry.getParent();
+        PendingDirectory state = parent == null ? null : pending.get(key(parent));
+        if (state != null) {
+            state.failed = true;
+        }
+    }
+
+    private void countEntry(Path path, boolean directory) {
+        Path parent = path.getParent();
+        PendingDirectory state = parent == null ? null : pending.get(key(parent));
+        if (state == null) {
+            return;
+        }
+        state.entryCount.incrementAndGet();
+        if (directory && path.getFileName() != null) {
+            synchronized (state) {
+                state.childDirectories.add(path.getFileName().toString());
+            }
+        }
+    }
+
+    private boolean isUnchanged(Path dir, BasicFileAttributes attrs) {
+        Boolean known = verified.get(dir);
+        if (known != null) {
+            return known;
+        }
+
+        DirectoryState state = previous.get(dir);
+        boolean unchanged = state != null && state.modifiedNanos == nanos(attrs.lastModifiedTime())
+                && (!state.racy() || countEntries(dir) == state.entryCount);
+        if (unchanged) {
+            for (String child : state.childDirectories) {
+                Path childDir = dir.resolve(child);
+                BasicFileAttributes childAttrs;
+                try {
+                    childAttrs = Files.readAttributes(childDir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException ex) {
+                    unchanged = false;
+                    break;
+                }
+                if (!childAttrs.isDirectory() || !isUnchanged(childDir, childAttrs)) {
+                    unchanged = false;
+                    break;
+                }
+            }
+        }
+        verified.put(dir, unchanged);
+        return unchanged;
+    }
+
+    void save(Path root) {
+        Path rootKey = key(root);
+        Map<Path, DirectoryState> merged = new ConcurrentHashMap<>(current);
+        for (Map.Entry<Path, DirectoryState> entry : previous.entrySet()) {
+            Path dir = entry.getKey();
+            boolean keep = !dir.startsWith(rootKey) || Boolean.TRUE.equals(verified.get(dir)) && isUnderSkipped(dir);
+            if (keep) {
+                merged.putIfAbsent(dir, entry.getValue());
+            }
+        }
+
+        Path temporary = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(rulesetHash);
+            out.writeInt(merged.size());
+            for (Map.Entry<Path, DirectoryState> entry : merged.entrySet()) {
+                DirectoryState state = entry.getValue();
+                out.writeUTF(entry.getKey().toString());
+                out.writeLong(state.modifiedNanos);
+                out.writeLong(state.listedNanos);
+                out.writeInt(state.entryCount);
+                out.writeInt(state.childDirectories.size());
+                for (String child : state.childDirectories) {
+                    out.writeUTF(child);
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.warning("Nie udało się zapisać pamięci podręcznej katalogów: " + ex.getMessage());
+            return;
+        }
+
+        try {
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOGGER.warning("Nie udało się zapisać pamięci podręcznej katalogów: " + ex.getMessage());
+        }
+        LOGGER.info("Skanowanie przyrostowe: pominięte poddrzewa=" + skipped.size() + ", przeskanowane katalogi=" + current.size());
+    }
+
+    private static int countEntries(Path dir) {
+        int count = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path ignored : entries) {
+                count++;
+            }
+        } catch (IOException ex) {
+            return -1;
+        }
+        return count;
+    }
+
+    private boolean isUnderSkipped(Path dir) {
+        for (Path candidate = dir; candidate != null; candidate = candidate.getParent()) {
+            if (skipped.contains(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Path key(Path dir) {
+        return dir.toAbsolutePath().normalize();
+    }
+
+    private static long nanos(FileTime time) {
+        return nanos(time.toInstant());
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+}
@@ -0,0 +1,199 @@
+package pl.syntaxerr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+final class DirectoryWatcher implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(DirectoryWatcher.class.getName());
+    private static final int MAX_DEBOUNCE_PERIODS = 10;
+    private static final long SELF_RENAME_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    interface Handler {
+        void handle(List<Path> files, List<Path> directories);
+    }
+
+    private final Path root;
+    private final long debounceNanos;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Map<Path, Long> selfRenames = new ConcurrentHashMap<>();
+
+    DirectoryWatcher(Path root, Duration debounce) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.debounceNanos = debounce.toNanos();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        registerTree(this.root);
+    }
+
+    void ignoreSelfRename(Path target) {
+        selfRenames.put(target.toAbsolutePath().normalize(), System.nanoTime() + SELF_RENAME_TTL_NANOS);
+    }
+
+    // The move did not happen, so an entry that later appears under that name is a genuine new one.
+    void forgetSelfRename(Path target) {
+        selfRenames.remove(target.toAbsolutePath().normalize());
+    }
+
+    void run(Handler handler) throws IOException, InterruptedException {
+        Set<Path> changed = new LinkedHashSet<>();
+        Set<Path> rescan = new LinkedHashSet<>();
+        long quietDeadline = 0;
+        long batchDeadline = 0;
+
+        while (!directories.isEmpty()) {
+            WatchKey key;
+            if (changed.isEmpty() && rescan.isEmpty()) {
+                key = watchService.take();
+            } else {
+                long wait = Math.min(quietDeadline, batchDeadline) - System.nanoTime();
+                key = wait > 0 ? watchService.poll(wait, TimeUnit.NANOSECONDS) : null;
+            }
+
+            if (key == null) {
+                dispatch(handler, changed, rescan);
+                changed.clear();
+                rescan.clear();
+                expireSelfRenames();
+                continue;
+            }
+
+            boolean batchWasEmpty = changed.isEmpty() && rescan.isEmpty();
+            collect(key, changed, rescan);
+            if (changed.isEmpty() && rescan.isEmpty()) {
+                continue;
+            }
+            long now = System.nanoTime();
+            quietDeadline = now + debounceNanos;
+            if (batchWasEmpty) {
+                batchDeadline = now + debounceNanos * MAX_DEBOUNCE_PERIODS;
+            }
+        }
+        LOGGER.warning("Obserwowany katalog przestał być dostępny: " + root);
+    }
+
+    private void collect(WatchKey key, Set<Path> changed, Set<Path> rescan) throws IOException {
+        Path dir = directories.get(key);
+        List<WatchEvent<?>> events = key.pollEvents();
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        if (dir == null) {
+            return;
+        }
+
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                LOGGER.warning("Przepełnienie kolejki zdarzeń, ponowne skanowanie katalogu: " + dir);
+                registerTree(dir);
+                rescan.add(dir);
+                continue;
+            }
+
+            Path child = dir.resolve((Path) event.context());
+            boolean directory = Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS);
+            if (directory) {
+                registerTree(child);
+            }
+            if (!isSelfRename(child)) {
+                changed.add(child);
+            }
+        }
+    }
+
+    private boolean isSelfRename(Path path) {
+        Long deadline = selfRenames.remove(path);
+        return deadline != null && deadline - System.nanoTime() >= 0;
+    }
+
+    // Targets whose event never arrived (e.g. the entry was moved away again) are dropped once per batch.
+    private void expireSelfRenames() {
+        long now = System.nanoTime();
+        selfRenames.values().removeIf(expiry -> expiry - now < 0);
+    }
+
+    private static void dispatch(Handler handler, Set<Path> changed, Set<Path> rescan) {
+        Set<Path> trees = new LinkedHashSet<>();
+        for (Path path : changed) {
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                trees.add(path);
+            }
+        }
+        for (Path dir : rescan) {
+            if (Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                trees.add(dir);
+            }
+        }
+
+        List<Path> directories = new ArrayList<>();
+        for (Path dir : trees) {
+            if (!isInside(dir, trees)) {
+                directories.add(dir);
+            }
+        }
+        List<Path> files = new ArrayList<>();
+        for (Path path : changed) {
+            if (!trees.contains(path) && Files.exists(path, LinkOption.NOFOLLOW_LINKS) && !isInside(path, trees)) {
+                files.add(path);
+            }
+        }
+        if (!files.isEmpty() || !directories.isEmpty()) {
+            handler.handle(files, directories);
+        }
+    }
+
+    private static boolean isInside(Path path, Set<Path> trees) {
+        for (Path parent = path.getParent(); parent != null; parent = parent.getParent()) {
+            if (trees.contains(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void registerTree(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                try {
+                    directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE), dir);
+                    return FileVisitResult.CONTINUE;
+                } catch (IOException ex) {
+                    LOGGER.warning("Nie udało się obserwować katalogu: " + dir + " (" + ex.getMessage() + ")");
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                LOGGER.warning("Nie udało się obserwować katalogu: " + file + " (" + exc.getMessage() + ")");
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
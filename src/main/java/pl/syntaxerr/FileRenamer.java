@@ -1,150 +1,89 @@
 package pl.syntaxerr;
 
-import javax.swing.*;
-import java.awt.*;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.util.*;
-import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
-public class FileRenamer {
-    private static final String HISTORY_PREFIX = "Changed file/directory name: ";
-    private static final String HISTORY_SEPARATOR = " to ";
-    private static final String STRUCTURED_HISTORY_PREFIX = "RENAMED\t";
+public class FileRenamer implements AutoCloseable {
     private static final Logger LOGGER = Logger.getLogger(FileRenamer.class.getName());
-    private static final List<String> DEFAULT_FORBIDDEN_WORDS = List.of(
+    private static final List<String> MODE_FLAGS = List.of(
+            "--gui", "--cli", "--watch", "--daemon", "--client", "--undo-history", "--history-sessions", "--compact-history", "--diagnose-gui"
+    );
+    static final List<String> DEFAULT_FORBIDDEN_WORDS = List.of(
             "[xtorrenty.org]", "[Ex-torrenty.org]", "[DEVIL-TORRENTS.PL]", "[POLSKIE-TORRENTY.EU]", "[superseed.byethost7.com]",
             "[Devil-Site.PL]", "[BEST-TORRENTS.ORG]", "[Feniks-site.com.pl]", "[helltorrents.com]", "[electro-torrent.pl]",
             "[rarbg.to]", "[1337x.to]", "[torrentgalaxy.to]", "[yts.mx]", "[thepiratebay.org]", "[eztv.re]",
             "[katcr.co]", "[limetorrents.lol]", "[nyaa.si]", "[zooqle.com]", "[torlock.com]", "[torrentdownloads.me]"
     );
-    private final JTextField directoryField;
-    private final JTextArea forbiddenWordsArea;
-    private final JFrame frame;
     private final File forbiddenWordsFile;
     private final File historyFile;
+    private final HistoryStore historyStore;
     private final File errorFile;
-    private final JProgressBar progressBar;
-    private final JLabel statusLabel;
-    private final boolean headlessMode;
+    private final File directoryCacheFile;
+    private final File walkFilterFile;
+    private final RunProgress progress = new RunProgress();
+    private final Diagnostics diagnostics;
+    private TreeTraversal traversal = new SequentialTreeTraversal();
+    private int parallelism = 1;
+    private HistoryJournal.Durability historyDurability = HistoryJournal.Durability.PERIODIC;
+    private boolean incremental;
+    private boolean checkpoints;
+    private boolean resume;
+    private Duration checkpointInterval = RunCheckpoint.DEFAULT_INTERVAL;
+    private WalkFilter walkFilter;
+    private Path metricsFile;
+    private int nameCacheSize = CleanedNameCache.DEFAULT_CAPACITY;
+    private volatile RunMetrics metrics = new RunMetrics("rename");
+
+    // onFailed receives the source and the intended target of every entry that was skipped or failed to rename.
+    private record RenameRun(CleanedNameCache names, HistoryJournal journal, RunMetrics metrics, FileStoreLimiter io,
+                             Consumer<Path> onRenamed, BiConsumer<Path, Path> onFailed) {
+        RenameRun(CleanedNameCache names, HistoryJournal journal, RunMetrics metrics, FileStoreLimiter io, Consumer<Path> onRenamed) {
+            this(names, journal, metrics, io, onRenamed, (source, target) -> {
+            });
+        }
 
-    public FileRenamer() {
-        this(false);
+        RenameRun(CleanedNameCache names, HistoryJournal journal, RunMetrics metrics, FileStoreLimiter io) {
+            this(names, journal, metrics, io, target -> {
+            });
+        }
+
+        RenameRun(CleanedNameCache names, HistoryJournal journal, RunMetrics metrics) {
+            this(names, journal, metrics, FileStoreLimiter.create(1));
+        }
+
+        RenameRun alsoOnFailed(BiConsumer<Path, Path> listener) {
+            return new RenameRun(names, journal, metrics, io, onRenamed, onFailed.andThen(listener));
+        }
     }
 
-    public FileRenamer(boolean headlessMode) {
-        this.headlessMode = headlessMode;
+    public FileRenamer() {
         forbiddenWordsFile = new File("blacklist.txt");
         historyFile = new File("history.txt");
+        historyStore = new HistoryStore(historyFile.toPath());
         errorFile = new File("error.txt");
+        directoryCacheFile = new File("dirstate.cache");
+        walkFilterFile = new File("filters.txt");
+        walkFilter = readWalkFilterFromFile();
         ensureAppFilesExist();
-
-        if (headlessMode) {
-            frame = null;
-            progressBar = null;
-            statusLabel = null;
-            directoryField = null;
-            forbiddenWordsArea = null;
-            return;
-        }
-
-        frame = new JFrame("T.F.N.C. - Torrent File Name Cleaner");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setSize(400, 300);
-
-        progressBar = new JProgressBar();
-        statusLabel = new JLabel("Ready...");
-
-        directoryField = new JTextField(20); // Set the width of the text field
-        directoryField.setToolTipText("Enter the directory path here or select using the button");
-        JButton directoryChooserButton = new JButton("Select directory");
-
-        forbiddenWordsArea = new JTextArea();
-        forbiddenWordsArea.setLineWrap(true);
-        forbiddenWordsArea.setWrapStyleWord(true);
-        forbiddenWordsArea.setToolTipText("Enter forbidden words here, one per line");
-
-        JButton runButton = new JButton("Run");
-        JButton undoButton = new JButton("Undo from history");
-
-        forbiddenWordsArea.setText(String.join(System.lineSeparator(), readForbiddenWordsFromFile()));
-
-        JPanel directoryPanel = new JPanel(new FlowLayout());
-        directoryPanel.add(directoryField);
-        directoryPanel.add(Box.createVerticalStrut(10)); // Add vertical spacing
-        directoryPanel.add(directoryChooserButton);
-
-        runButton.addActionListener(e -> {
-            String directory = directoryField.getText();
-            List<String> forbiddenWords = parseForbiddenWords(forbiddenWordsArea.getText());
-            try {
-                renameFilesAndDirectoriesInDirectory(directory, forbiddenWords);
-                try (PrintWriter writer = new PrintWriter(new FileWriter(forbiddenWordsFile))) {
-                    for (String word : forbiddenWords) {
-                        writer.println(word);
-                    }
-                }
-            } catch (IOException ex) {
-                LOGGER.severe("An error occurred: " + ex.getMessage());
-            }
-        });
-
-        undoButton.addActionListener(e -> {
-            String directory = directoryField.getText();
-            if (directory == null || directory.isBlank()) {
-                setStatus("Podaj katalog do cofania zmian.");
-                LOGGER.severe("Brak katalogu dla cofania zmian.");
-                return;
-            }
-            undoRenamesFromHistory(directory);
-        });
-
-        directoryChooserButton.addActionListener(e -> {
-            JFileChooser chooser = new JFileChooser();
-            chooser.setCurrentDirectory(new File("."));
-            chooser.setDialogTitle("Select directory");
-            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
-            chooser.setAcceptAllFileFilterUsed(false);
-
-            if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-                directoryField.setText(chooser.getSelectedFile().toString());
-            }
-        });
-
-        frame.setLayout(new BorderLayout());
-
-        JPanel northPanel = new JPanel(new BorderLayout());
-        northPanel.add(new JLabel("Directory:"), BorderLayout.NORTH);
-        northPanel.add(directoryPanel, BorderLayout.CENTER);
-
-        JPanel centerPanel = new JPanel(new BorderLayout());
-        centerPanel.add(new JLabel("Forbidden words:"), BorderLayout.NORTH);
-        centerPanel.add(forbiddenWordsArea, BorderLayout.CENTER);
-
-        JPanel progressPanel = new JPanel(new BorderLayout());
-        progressPanel.add(statusLabel, BorderLayout.NORTH);
-        progressPanel.add(progressBar, BorderLayout.SOUTH);
-
-        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
-        buttonsPanel.add(runButton);
-        buttonsPanel.add(undoButton);
-
-        JPanel southPanel = new JPanel(new BorderLayout());
-        southPanel.add(progressPanel, BorderLayout.NORTH); // Add the progress panel here
-        southPanel.add(buttonsPanel, BorderLayout.SOUTH);
-
-        frame.add(northPanel, BorderLayout.NORTH);
-        frame.add(centerPanel, BorderLayout.CENTER);
-        frame.add(southPanel, BorderLayout.SOUTH);
-        frame.setVisible(true);
-        frame.revalidate();
-        frame.repaint();
+        diagnostics = new Diagnostics(errorFile.toPath(), LOGGER);
     }
 
     private void ensureAppFilesExist() {
@@ -169,7 +108,7 @@ public class FileRenamer {
         }
     }
 
-    private List<String> readForbiddenWordsFromFile() {
+    List<String> readForbiddenWordsFromFile() {
         if (!forbiddenWordsFile.exists()) {
             return new ArrayList<>(DEFAULT_FORBIDDEN_WORDS);
         }
@@ -189,168 +128,554 @@ public class FileRenamer {
     }
 
     public void renameFilesAndDirectoriesInDirectory(String directory, List<String> forbiddenWords) {
-        setProgressIndeterminate(true);
+        renameFilesAndDirectoriesInDirectory(directory, forbiddenWords, null);
+    }
+
+    void renameFilesAndDirectoriesInDirectory(String directory, List<String> forbiddenWords, CleanedNameCache compiled) {
+        progress.begin();
         setStatus("Renaming files and directories... Please wait!");
 
         Path start = Paths.get(directory);
+        metrics = new RunMetrics("rename");
+        CleanedNameCache names = compiled;
+        if (names == null) {
+            try (RunMetrics.Phase ignored = metrics.phase("compile")) {
+                names = new CleanedNameCache(ForbiddenWordsMatcher.compile(forbiddenWords), nameCacheSize);
+            }
+        }
+        String rulesetHash = DirectoryStateCache.rulesetHash(forbiddenWords, walkFilter);
+        DirectoryStateCache cache = incremental ? DirectoryStateCache.load(directoryCacheFile.toPath(), rulesetHash) : null;
+        FileStoreLimiter io = FileStoreLimiter.create(parallelism);
+        RunCheckpoint checkpoint = null;
+        if (checkpoints) {
+            Path checkpointFile = RunCheckpoint.fileFor(Path.of(""), start);
+            checkpoint = resume
+                    ? RunCheckpoint.resume(checkpointFile, start, rulesetHash, checkpointInterval)
+                    : RunCheckpoint.start(checkpointFile, start, rulesetHash, checkpointInterval);
+        }
+        boolean completed = false;
+        try (HistoryJournal journal = historyStore.openSession(start, historyDurability);
+             RunMetrics.Phase ignored = metrics.phase("walk")) {
+            if (checkpoint != null) {
+                checkpoint.begin(historyStore, journal);
+            }
+            processTree(start, start, new RenameRun(names, journal, metrics, io), cache, checkpoint);
+            completed = !progress.isCancelled();
+            if (checkpoint != null && !completed) {
+                checkpoint.save();
+            }
+        } catch (IOException ex) {
+            LOGGER.severe("An error occurred while walking through files and directories: " + ex.getMessage());
+            setStatus("Error walking through files and directories.");
+        }
+        if (checkpoint != null && completed) {
+            checkpoint.complete();
+        }
+        if (cache != null) {
+            cache.save(start);
+        }
+        diagnostics.flush();
+        logIoLimits(io);
+        publishMetrics();
+        LOGGER.info("File and directory names changed...");
+        LOGGER.info("Finished renaming all files and directories.");
+        progress.finish();
+        setStatus("Finished renaming all files and directories");
+    }
+
+    List<BatchManifest.RootResult> renameRoots(List<Path> roots, List<String> forbiddenWords, int perDeviceConcurrency) {
+        progress.begin();
+        setStatus("Renaming files and directories in " + roots.size() + " directories... Please wait!");
+
+        RunMetrics batchMetrics = new RunMetrics("batch");
+        metrics = batchMetrics;
+        CleanedNameCache names;
+        try (RunMetrics.Phase ignored = batchMetrics.phase("compile")) {
+            names = new CleanedNameCache(ForbiddenWordsMatcher.compile(forbiddenWords), nameCacheSize);
+        }
+
+        Map<FileStore, Semaphore> devicePermits = new ConcurrentHashMap<>();
+        FileStoreLimiter io = FileStoreLimiter.create(parallelism * perDeviceConcurrency);
+        List<BatchManifest.RootResult> results = new ArrayList<>();
+        try (HistoryJournal journal = historyStore.openSession(BatchManifest.commonAncestor(roots), historyDurability);
+             RunMetrics.Phase ignored = batchMetrics.phase("walk");
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<BatchManifest.RootResult>> pending = new ArrayList<>();
+            for (Path root : roots) {
+                pending.add(executor.submit(() -> renameRoot(root, names, journal, io, devicePermits, perDeviceConcurrency, batchMetrics)));
+            }
+            // every root gets a result, so one failed walk does not hide how the others went
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    results.add(pending.get(i).get());
+                } catch (ExecutionException ex) {
+                    results.add(new BatchManifest.RootResult(roots.get(i), 0, 0, 0, 0, 0, String.valueOf(ex.getCause())));
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.severe("Nie udało się otworzyć historii zmian: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        diagnostics.flush();
+        logIoLimits(io);
+        for (BatchManifest.RootResult result : results) {
+            if (result.failed()) {
+                LOGGER.severe("Katalog " + result.root() + ": błąd – " + result.failure());
+            } else {
+                LOGGER.info("Katalog " + result.root() + ": odwiedzone=" + result.visited() + ", zmienione=" + result.renamed()
+                        + ", pominięte=" + result.skipped() + ", błędy=" + result.errored() + ", czas=" + result.millis() + " ms");
+            }
+        }
+        publishMetrics();
+        progress.finish();
+        setStatus("Finished renaming all files and directories");
+        return results;
+    }
+
+    private BatchManifest.RootResult renameRoot(Path root, CleanedNameCache names, HistoryJournal journal, FileStoreLimiter io,
+                                                Map<FileStore, Semaphore> devicePermits, int perDeviceConcurrency,
+                                                RunMetrics batchMetrics) throws InterruptedException {
+        if (!Files.isDirectory(root)) {
+            return new BatchManifest.RootResult(root, 0, 0, 0, 0, 0, "nie jest katalogiem");
+        }
+
+        Semaphore permits;
         try {
-            processFiles(start, forbiddenWords);
+            permits = devicePermits.computeIfAbsent(Files.getFileStore(root), store -> new Semaphore(perDeviceConcurrency));
         } catch (IOException ex) {
-            LOGGER.severe("An error occurred while walking through files: " + ex.getMessage());
-            setStatus("Error walking through files.");
+            return new BatchManifest.RootResult(root, 0, 0, 0, 0, 0, ex.getMessage());
         }
-        LOGGER.info("File names changed...");
 
+        permits.acquire();
+        RunMetrics rootMetrics = new RunMetrics("rename", batchMetrics);
+        String failure = null;
         try {
-            processDirectories(start, forbiddenWords);
+            processTree(root, new RenameRun(names, journal, rootMetrics, io), null);
         } catch (IOException ex) {
-            LOGGER.severe("An error occurred while walking through directories: " + ex.getMessage());
-            setStatus("Error walking through directories.");
+            failure = ex.getMessage();
+        } finally {
+            permits.release();
         }
-        LOGGER.info("Directory names changed...");
-        LOGGER.info("Finished renaming all files and directories.");
-        setProgressIndeterminate(false);
-        setStatus("Finished renaming all files and directories");
+        return new BatchManifest.RootResult(root, rootMetrics.count(RunMetrics.Counter.VISITED),
+                rootMetrics.count(RunMetrics.Counter.RENAMED), rootMetrics.count(RunMetrics.Counter.SKIPPED),
+                rootMetrics.count(RunMetrics.Counter.ERRORED), rootMetrics.elapsedMillis(), failure);
     }
 
-    private void setStatus(String text) {
-        if (headlessMode || statusLabel == null) {
-            return;
+    // Cleans only the listed entries, so one finished download costs as much as its own entries rather than a walk of
+    // the whole library. Files are renamed as they arrive; directories wait in the reorder buffer until their children
+    // are done. The walk filter applies to each entry on its own: entry type and globs matching the name.
+    void renameListedPaths(PathListReader paths, List<String> forbiddenWords) {
+        progress.begin();
+        setStatus("Renaming listed files and directories... Please wait!");
+
+        metrics = new RunMetrics("paths");
+        CleanedNameCache names;
+        try (RunMetrics.Phase ignored = metrics.phase("compile")) {
+            names = new CleanedNameCache(ForbiddenWordsMatcher.compile(forbiddenWords), nameCacheSize);
+        }
+        Path sessionRoot = Path.of("").toAbsolutePath().getRoot();
+        try (HistoryJournal journal = historyStore.openSession(sessionRoot, historyDurability);
+             RunMetrics.Phase ignored = metrics.phase("rename")) {
+            RenameRun run = new RenameRun(names, journal, metrics);
+            DirectoryReorderBuffer directories = new DirectoryReorderBuffer(DirectoryReorderBuffer.DEFAULT_CAPACITY,
+                    dir -> renameIfNecessary(dir, run, null));
+            try {
+                while (!progress.isCancelled()) {
+                    Path listed;
+                    try {
+                        listed = paths.next();
+                    } catch (InvalidPathException ex) {
+                        metrics.increment(RunMetrics.Counter.ERRORED);
+                        diagnostics.error("invalid-path", "Niepoprawna ścieżka na liście: " + ex.getMessage());
+                        continue;
+                    }
+                    if (listed == null) {
+                        break;
+                    }
+                    renameListedPath(directories.resolve(listed), run, directories);
+                }
+            } finally {
+                directories.flush();
+            }
+        } catch (IOException ex) {
+            LOGGER.severe("Nie udało się przetworzyć listy ścieżek: " + ex.getMessage());
+            setStatus("Error reading the list of paths.");
         }
-        SwingUtilities.invokeLater(() -> statusLabel.setText(text));
+        diagnostics.flush();
+        publishMetrics();
+        LOGGER.info("Finished renaming listed files and directories.");
+        progress.finish();
+        setStatus("Finished renaming listed files and directories");
     }
 
-    private void setProgressIndeterminate(boolean indeterminate) {
-        if (headlessMode || progressBar == null) {
+    private void renameListedPath(Path path, RenameRun run, DirectoryReorderBuffer directories) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException ex) {
+            handleVisitFailure(path, ex, run.metrics());
+            return;
+        }
+        boolean directory = attrs.isDirectory();
+        if (path.getParent() == null || walkFilter.excludes(path.getParent(), path, directory) || walkFilter.excludesAncestorOf(path)) {
             return;
         }
-        SwingUtilities.invokeLater(() -> progressBar.setIndeterminate(indeterminate));
+        if (directory && walkFilter.renamesDirectories()) {
+            directories.add(path);
+        } else if (!directory && walkFilter.renamesFiles()) {
+            renameIfNecessary(path, run, null);
+        }
     }
 
-    private void processFiles(Path start, List<String> forbiddenWords) throws IOException {
-        Files.walkFileTree(start, new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                renameIfNecessary(file, forbiddenWords);
-                return FileVisitResult.CONTINUE;
-            }
+    RenamePlan planRenames(String directory, List<String> forbiddenWords) throws IOException {
+        return planRenames(directory, new CleanedNameCache(ForbiddenWordsMatcher.compile(forbiddenWords), nameCacheSize));
+    }
 
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                handleVisitFailure(file, exc);
-                return FileVisitResult.CONTINUE;
-            }
-        });
+    RenamePlan planRenames(String directory, CleanedNameCache names) throws IOException {
+        metrics = new RunMetrics("plan");
+        RenamePlan plan;
+        try (RunMetrics.Phase ignored = metrics.phase("plan")) {
+            RenamePlanner planner = new RenamePlanner(name -> names.clean(name, metrics), traversal,
+                    (path, exc) -> handleVisitFailure(path, exc, metrics), walkFilter);
+            plan = planner.plan(Paths.get(directory));
+        }
+        metrics.add(RunMetrics.Counter.MATCHED, plan.operations().size() + plan.rejections().size());
+        metrics.add(RunMetrics.Counter.SKIPPED, plan.rejections().size());
+        diagnostics.flush();
+        LOGGER.info("Plan zmian: do zmiany=" + plan.operations().size() + ", odrzucone=" + plan.rejections().size());
+        return plan;
     }
 
-    private void processDirectories(Path start, List<String> forbiddenWords) throws IOException {
-        Files.walkFileTree(start, new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                return FileVisitResult.CONTINUE;
-            }
+    void applyPlan(String directory, RenamePlan plan) {
+        progress.begin();
+        setStatus("Renaming files and directories... Please wait!");
 
-            @Override
-            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
-                if (exc != null) {
-                    handleVisitFailure(dir, exc);
-                } else {
-                    renameIfNecessary(dir, forbiddenWords);
+        Path start = Paths.get(directory);
+        try (HistoryJournal journal = historyStore.openSession(start, historyDurability);
+             RunMetrics.Phase ignored = metrics.phase("apply")) {
+            RenameRun run = new RenameRun(null, journal, metrics);
+            progress.setTotal(plan.operations().size());
+            for (RenamePlan.Operation operation : plan.operations()) {
+                if (progress.isCancelled()) {
+                    break;
                 }
-                return FileVisitResult.CONTINUE;
+                progress.advance();
+                applyRename(operation.source(), operation.newName(), run);
             }
+        } catch (IOException ex) {
+            LOGGER.severe("An error occurred while applying the rename plan: " + ex.getMessage());
+            setStatus("Error applying the rename plan.");
+        }
+        diagnostics.flush();
+        publishMetrics();
+        LOGGER.info("Finished renaming all files and directories.");
+        progress.finish();
+        setStatus("Finished renaming all files and directories");
+    }
 
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                handleVisitFailure(file, exc);
-                return FileVisitResult.CONTINUE;
-            }
-        });
+    void watchDirectory(String directory, List<String> forbiddenWords, Duration debounce) {
+        Path root = Paths.get(directory);
+        metrics = new RunMetrics("watch");
+        CleanedNameCache names = new CleanedNameCache(ForbiddenWordsMatcher.compile(forbiddenWords), nameCacheSize);
+        try (DirectoryWatcher watcher = new DirectoryWatcher(root, debounce);
+             HistoryJournal journal = historyStore.openSession(root, historyDurability)) {
+            RenameRun run = new RenameRun(names, journal, metrics, FileStoreLimiter.create(1), watcher::ignoreSelfRename,
+                    (source, target) -> watcher.forgetSelfRename(target));
+            LOGGER.info("Obserwowanie katalogu " + root.toAbsolutePath() + " (Ctrl+C kończy działanie).");
+            watcher.run((files, directories) -> {
+                for (Path file : files) {
+                    if (walkFilter.renamesFiles() && !walkFilter.excludes(root, file, false)) {
+                        renameIfNecessary(file, run);
+                    }
+                }
+                for (Path dir : directories) {
+                    if (walkFilter.excludes(root, dir, true)) {
+                        continue;
+                    }
+                    try {
+                        processTree(dir, root, run, null, null);
+                    } catch (IOException ex) {
+                        handleVisitFailure(dir, ex, run.metrics());
+                    }
+                }
+                diagnostics.flush();
+            });
+        } catch (IOException ex) {
+            LOGGER.severe("Nie udało się obserwować katalogu " + directory + ": " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        diagnostics.flush();
+        publishMetrics();
+        LOGGER.info("Zakończono obserwowanie katalogu " + directory + ".");
+    }
+
+    @Override
+    public void close() {
+        diagnostics.close();
+    }
+
+    void setLogLevel(Level level) {
+        diagnostics.setLevel(level);
+    }
+
+    void setHistoryDurability(HistoryJournal.Durability historyDurability) {
+        this.historyDurability = historyDurability;
+    }
+
+    void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        traversal = parallelism > 1 ? new ParallelTreeTraversal(parallelism) : new SequentialTreeTraversal();
+    }
+
+    void setIncremental(boolean incremental) {
+        this.incremental = incremental;
     }
 
-    private void handleVisitFailure(Path path, IOException exc) {
-        String message = "Failed to access: " + path + " (" + exc.getMessage() + ")";
-        LOGGER.severe(message);
-        try (PrintWriter writer = new PrintWriter(new FileWriter(errorFile, true))) {
-            writer.println(message);
-        } catch (IOException errorFileException) {
-            LOGGER.severe("An error occurred: " + errorFileException.getMessage());
+    void setCheckpoints(boolean checkpoints, boolean resume) {
+        this.checkpoints = checkpoints || resume;
+        this.resume = resume;
+    }
+
+    void setCheckpointInterval(Duration checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    WalkFilter walkFilter() {
+        return walkFilter;
+    }
+
+    void setWalkFilter(WalkFilter walkFilter) {
+        this.walkFilter = walkFilter;
+    }
+
+    WalkFilter readWalkFilterFromFile() {
+        return WalkFilter.load(walkFilterFile.toPath());
+    }
+
+    void setMetricsFile(Path metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    void setNameCacheSize(int nameCacheSize) {
+        this.nameCacheSize = nameCacheSize;
+    }
+
+    RunMetrics lastRunMetrics() {
+        return metrics;
+    }
+
+    void publishMetrics() {
+        RunMetrics finished = metrics;
+        finished.finish();
+        LOGGER.info(finished.summary());
+        if (metricsFile == null) {
+            return;
+        }
+        try {
+            finished.writeJson(metricsFile);
+        } catch (IOException ex) {
+            LOGGER.warning("Nie udało się zapisać statystyk do " + metricsFile + ": " + ex.getMessage());
         }
-        setStatus("Error accessing " + path);
     }
 
-    private void renameIfNecessary(Path path, List<String> forbiddenWords) {
-        String name = path.getFileName().toString();
-        String newName = name;
-        boolean changed = false;
+    private void setStatus(String text) {
+        progress.setStatus(text);
+    }
 
-        for (String word : forbiddenWords) {
-            if (word == null || word.isBlank()) {
-                continue;
-            }
+    RunProgress progress() {
+        return progress;
+    }
 
-            String pattern = "(?i)" + Pattern.quote(word);
-            if (Pattern.compile(pattern).matcher(newName).find()) {
-                newName = newName.replaceAll(pattern, "");
-                changed = true;
+    void saveForbiddenWordsToFile(List<String> forbiddenWords) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(forbiddenWordsFile))) {
+            for (String word : forbiddenWords) {
+                writer.println(word);
             }
         }
+    }
 
-        if (changed) {
-            newName = newName.trim();
+    long countEntries(Path start) {
+        LongAdder entries = new LongAdder();
+        TreeTraversal counter = new ParallelTreeTraversal(Runtime.getRuntime().availableProcessors());
+        try {
+            counter.walk(start, walkFilter.wrap(start, new TreeTraversal.Visitor() {
+                @Override
+                public boolean enterDirectory(Path dir, BasicFileAttributes attrs) {
+                    return !progress.isCancelled();
+                }
 
-            if (newName.isBlank()) {
-                String message = "Pominięto zmianę, bo nowa nazwa byłaby pusta: " + path;
-                LOGGER.severe(message);
-                try (PrintWriter writer = new PrintWriter(new FileWriter(errorFile, true))) {
-                    writer.println(message);
-                } catch (IOException eBlank) {
-                    LOGGER.severe("An error occurred: " + eBlank.getMessage());
+                @Override
+                public void visitFile(Path file, BasicFileAttributes attrs) {
+                    entries.increment();
                 }
-                return;
-            }
 
-            try {
-                if (!Files.isWritable(path)) {
-                    LOGGER.severe("File is read-only: " + path);
-                    try (PrintWriter writer = new PrintWriter(new FileWriter(errorFile, true))) {
-                        writer.println("File is read-only: " + path);
-                    }
-                    return;
+                @Override
+                public void leaveDirectory(Path dir) {
+                    entries.increment();
                 }
-                Files.move(path, path.resolveSibling(newName));
-                LOGGER.severe("Changed file/directory name: " + name + " to " + newName);
-                try (PrintWriter writer = new PrintWriter(new FileWriter(historyFile, true))) {
-                    writer.println(HISTORY_PREFIX + name + HISTORY_SEPARATOR + newName);
-                    writer.println(STRUCTURED_HISTORY_PREFIX + path.toAbsolutePath() + "\t" + path.resolveSibling(newName).toAbsolutePath());
-                } catch (IOException epath) {
-                    LOGGER.severe("An error occurred: " + epath.getMessage());
+
+                @Override
+                public void visitFailed(Path path, IOException exc) {
+                    // reported by the rename walk
                 }
-            } catch (AccessDeniedException e) {
-                LOGGER.severe("No permission to rename: " + path);
-                try (PrintWriter writer = new PrintWriter(new FileWriter(errorFile, true))) {
-                    writer.println("No permission to rename: " + path);
-                } catch (IOException eAccess) {
-                    LOGGER.severe("An error occurred: " + eAccess.getMessage());
+            }));
+        } catch (IOException ex) {
+            return -1;
+        }
+        return entries.sum();
+    }
+
+    private void processTree(Path start, RenameRun run, DirectoryStateCache cache) throws IOException {
+        processTree(start, start, run, cache, null);
+    }
+
+    // Filter depth and relative globs are measured from filterRoot, which differs from start for watched subdirectories.
+    private void processTree(Path start, Path filterRoot, RenameRun walkRun, DirectoryStateCache cache, RunCheckpoint checkpoint)
+            throws IOException {
+        RenameRun run = cache == null ? walkRun : walkRun.alsoOnFailed((source, target) -> cache.failed(source));
+        try (DirectoryHandles handles = new DirectoryHandles()) {
+            TreeTraversal.Visitor visitor = new TreeTraversal.Visitor() {
+                @Override
+                public boolean enterDirectory(Path dir, BasicFileAttributes attrs) {
+                    return !progress.isCancelled() && (checkpoint == null || !checkpoint.skipSubtree(dir));
                 }
-                setStatus("Error: No permission to rename " + path);
-            } catch (FileSystemException e) {
-                LOGGER.severe("File system error during renaming: " + path);
-                try (PrintWriter writer = new PrintWriter(new FileWriter(errorFile, true))) {
-                    writer.println("File system error during renaming: " + path);
-                } catch (IOException eFileSystem) {
-                    LOGGER.severe("An error occurred: " + eFileSystem.getMessage());
+
+                @Override
+                public void visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!walkFilter.renamesFiles()) {
+                        return;
+                    }
+                    if (checkpoint == null) {
+                        renameIfNecessary(file, run, handles);
+                    } else if (!checkpoint.alreadyRenamed(file)) {
+                        checkpoint.renaming(() -> renameIfNecessary(file, run, handles));
+                    }
+                }
+
+                @Override
+                public void leaveDirectory(Path dir) {
+                    handles.release(dir);
+                    boolean rename = walkFilter.renamesDirectories();
+                    if (checkpoint == null) {
+                        if (rename) {
+                            renameIfNecessary(dir, run, handles);
+                        }
+                    } else if (!progress.isCancelled()) {
+                        Path renamed = !rename || checkpoint.alreadyRenamed(dir) ? dir : checkpoint.renaming(() -> renameIfNecessary(dir, run, handles));
+                        checkpoint.finished(dir, renamed);
+                    }
                 }
-                setStatus("Error: File system error during renaming " + path);
-            } catch (IOException e) {
-                LOGGER.severe("An error occurred: " + e.getMessage());
-                try (PrintWriter writer = new PrintWriter(new FileWriter(errorFile, true))) {
-                    writer.println("An error occurred: " + e.getMessage());
-                } catch (IOException eIOE) {
-                    LOGGER.severe("An error occurred: " + eIOE.getMessage());
+
+                @Override
+                public void visitFailed(Path path, IOException exc) {
+                    handles.release(path);
+                    handleVisitFailure(path, exc, run.metrics());
                 }
-                setStatus("Error: An error occurred during renaming " + path);
+            };
+            traversal.walk(start, walkFilter.wrap(filterRoot, cache == null ? visitor : cache.wrap(visitor)));
+        }
+    }
+
+    private static void logIoLimits(FileStoreLimiter io) {
+        for (String line : io.summary()) {
+            LOGGER.info("Współbieżność operacji na " + line);
+        }
+    }
+
+    private void handleVisitFailure(Path path, IOException exc, RunMetrics metrics) {
+        metrics.increment(RunMetrics.Counter.ERRORED);
+        diagnostics.error("visit-failure", "Failed to access: " + path + " (" + exc.getMessage() + ")");
+        setStatus("Error accessing " + path);
+    }
+
+    private void renameIfNecessary(Path path, RenameRun run) {
+        renameIfNecessary(path, run, null);
+    }
+
+    private Path renameIfNecessary(Path path, RenameRun run, DirectoryHandles handles) {
+        progress.advance();
+        if (progress.isCancelled()) {
+            return path;
+        }
+        String name = path.getFileName().toString();
+        String newName = run.names().clean(name, run.metrics());
+        boolean changed = !newName.equals(name);
+        run.metrics().increment(RunMetrics.Counter.VISITED);
+
+        if (changed) {
+            run.metrics().increment(RunMetrics.Counter.MATCHED);
+            newName = newName.trim();
+
+            if (newName.isBlank()) {
+                run.metrics().increment(RunMetrics.Counter.SKIPPED);
+                diagnostics.error("empty-name", "Pominięto zmianę, bo nowa nazwa byłaby pusta: " + path);
+                run.onFailed().accept(path, path);
+                return path;
             }
+
+            return applyRename(path, newName, run, handles);
+        }
+        return path;
+    }
+
+    private void applyRename(Path path, String newName, RenameRun run) {
+        applyRename(path, newName, run, null);
+    }
+
+    private Path applyRename(Path path, String newName, RenameRun run, DirectoryHandles handles) {
+        String name = path.getFileName().toString();
+        Path target = path.resolveSibling(newName);
+        try {
+            if (!Files.isWritable(path)) {
+                run.metrics().increment(RunMetrics.Counter.SKIPPED);
+                diagnostics.error("read-only", "File is read-only: " + path);
+                run.onFailed().accept(path, target);
+                return path;
+            }
+            try {
+                run.metrics().timeJournal(() -> run.journal().recordRename(path, target));
+            } catch (IOException eJournal) {
+                run.metrics().increment(RunMetrics.Counter.ERRORED);
+                diagnostics.error("history-write", "Pominięto zmianę, bo nie udało się zapisać historii: " + path + " (" + eJournal.getMessage() + ")");
+                run.onFailed().accept(path, target);
+                return path;
+            }
+            run.onRenamed().accept(target);
+            try {
+                RunMetrics.IoAction move = handles != null ? () -> handles.move(path, target) : () -> Files.move(path, target);
+                run.io().run(path, () -> run.metrics().timeMove(path, target, move));
+            } catch (IOException moveFailure) {
+                abortHistoryEntry(run.journal(), path, target);
+                throw moveFailure;
+            }
+            run.metrics().increment(RunMetrics.Counter.RENAMED);
+            diagnostics.info("Changed file/directory name: " + name + " to " + newName);
+            return target;
+        } catch (AccessDeniedException e) {
+            run.metrics().increment(RunMetrics.Counter.ERRORED);
+            diagnostics.error("access-denied", "No permission to rename: " + path);
+            setStatus("Error: No permission to rename " + path);
+        } catch (FileSystemException e) {
+            run.metrics().increment(RunMetrics.Counter.ERRORED);
+            diagnostics.error("file-system", "File system error during renaming: " + path);
+            setStatus("Error: File system error during renaming " + path);
+        } catch (IOException e) {
+            run.metrics().increment(RunMetrics.Counter.ERRORED);
+            diagnostics.error("io", "An error occurred: " + e.getMessage());
+            setStatus("Error: An error occurred during renaming " + path);
+        }
+        run.onFailed().accept(path, target);
+        return path;
+    }
+
+    private void abortHistoryEntry(HistoryJournal journal, Path path, Path target) {
+        try {
+            journal.recordAborted(path, target);
+        } catch (IOException ex) {
+            diagnostics.error("history-write", "Nie udało się oznaczyć wpisu historii jako anulowanego: " + path + " (" + ex.getMessage() + ")");
         }
     }
 
@@ -381,137 +706,381 @@ public class FileRenamer {
     }
 
     private static void runCli(List<String> args) {
-        if (args.isEmpty()) {
-            LOGGER.severe("Tryb CLI wymaga argumentów: <katalog> [dodatkowe-zakazane-słowo-1] [dodatkowe-zakazane-słowo-2] ...");
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.severe(ex.getMessage());
             System.exit(1);
             return;
         }
 
-        String directory = args.get(0);
-        FileRenamer renamer = new FileRenamer(true);
+        if (options.batchManifest() != null) {
+            runBatch(options);
+            return;
+        }
 
-        LinkedHashSet<String> mergedForbiddenWords = new LinkedHashSet<>(renamer.readForbiddenWordsFromFile());
-        mergedForbiddenWords.addAll(args.subList(1, args.size()));
+        if (options.pathsFrom() != null) {
+            runPathsFrom(options);
+            return;
+        }
 
-        if (mergedForbiddenWords.isEmpty()) {
-            LOGGER.severe("Brak zakazanych słów. Uzupełnij blacklist.txt lub podaj dodatkowe słowa w CLI.");
+        List<String> positional = options.positional();
+        if (positional.isEmpty()) {
+            LOGGER.severe("Tryb CLI wymaga argumentów: [--parallel[=N]] [--durability=none|periodic|group-commit] [--log-level=LEVEL] [--metrics=PLIK.json] [--dry-run | --plan | --incremental] [--checkpoint] [--resume] [--paths-from=PLIK|-] [--include=GLOB] [--exclude=GLOB] [--max-depth=N] [--files-only | --dirs-only] <katalog> [dodatkowe-zakazane-słowo-1] [dodatkowe-zakazane-słowo-2] ...");
             System.exit(1);
             return;
         }
 
-        renamer.renameFilesAndDirectoriesInDirectory(directory, new ArrayList<>(mergedForbiddenWords));
+        String directory = positional.get(0);
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.setParallelism(options.parallelism());
+            renamer.setHistoryDurability(options.durability());
+            renamer.setLogLevel(options.logLevel());
+            renamer.setIncremental(options.incremental());
+            renamer.setCheckpoints(options.checkpoint(), options.resume());
+            renamer.setWalkFilter(options.walkFilter(renamer.walkFilter()));
+            renamer.setMetricsFile(options.metricsFile());
+            renamer.setNameCacheSize(options.nameCacheSize());
+
+            LinkedHashSet<String> mergedForbiddenWords = new LinkedHashSet<>(renamer.readForbiddenWordsFromFile());
+            mergedForbiddenWords.addAll(positional.subList(1, positional.size()));
+
+            if (mergedForbiddenWords.isEmpty()) {
+                LOGGER.severe("Brak zakazanych słów. Uzupełnij blacklist.txt lub podaj dodatkowe słowa w CLI.");
+                System.exit(1);
+                return;
+            }
+
+            List<String> forbiddenWords = new ArrayList<>(mergedForbiddenWords);
+            if (!options.dryRun() && !options.planned()) {
+                renamer.renameFilesAndDirectoriesInDirectory(directory, forbiddenWords);
+                return;
+            }
+
+            RenamePlan plan;
+            try {
+                plan = renamer.planRenames(directory, forbiddenWords);
+            } catch (IOException ex) {
+                LOGGER.severe("Nie udało się przygotować planu zmian: " + ex.getMessage());
+                System.exit(1);
+                return;
+            }
+
+            if (options.dryRun()) {
+                plan.print(System.out);
+                renamer.publishMetrics();
+            } else {
+                renamer.applyPlan(directory, plan);
+            }
+        }
     }
 
-    private record HistoryEntry(String oldName, String newName, Path oldPath, Path newPath) {
-        boolean hasAbsolutePaths() {
-            return oldPath != null && newPath != null;
+    private static void runBatch(CliOptions options) {
+        List<Path> roots;
+        try {
+            roots = BatchManifest.read(options.batchManifest(), System.in);
+        } catch (IOException | InvalidPathException ex) {
+            LOGGER.severe("Nie udało się odczytać listy katalogów " + options.batchManifest() + ": " + ex.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (roots.isEmpty()) {
+            LOGGER.severe("Lista katalogów " + options.batchManifest() + " jest pusta.");
+            System.exit(1);
+            return;
+        }
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.setParallelism(options.parallelism());
+            renamer.setHistoryDurability(options.durability());
+            renamer.setLogLevel(options.logLevel());
+            renamer.setMetricsFile(options.metricsFile());
+            renamer.setNameCacheSize(options.nameCacheSize());
+            renamer.setWalkFilter(options.walkFilter(renamer.walkFilter()));
+
+            LinkedHashSet<String> mergedForbiddenWords = new LinkedHashSet<>(renamer.readForbiddenWordsFromFile());
+            mergedForbiddenWords.addAll(options.positional());
+            List<BatchManifest.RootResult> results = renamer.renameRoots(roots, new ArrayList<>(mergedForbiddenWords), options.perDeviceConcurrency());
+            if (results.size() != roots.size() || results.stream().anyMatch(BatchManifest.RootResult::failed)) {
+                System.exit(1);
+            }
         }
     }
 
-    private List<HistoryEntry> readHistoryEntries() {
-        if (!historyFile.exists()) {
-            return List.of();
+    private static void runPathsFrom(CliOptions options) {
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.setHistoryDurability(options.durability());
+            renamer.setLogLevel(options.logLevel());
+            renamer.setMetricsFile(options.metricsFile());
+            renamer.setNameCacheSize(options.nameCacheSize());
+            renamer.setWalkFilter(options.walkFilter(renamer.walkFilter()));
+
+            LinkedHashSet<String> mergedForbiddenWords = new LinkedHashSet<>(renamer.readForbiddenWordsFromFile());
+            mergedForbiddenWords.addAll(options.positional());
+            try (PathListReader paths = PathListReader.open(options.pathsFrom(), System.in)) {
+                renamer.renameListedPaths(paths, new ArrayList<>(mergedForbiddenWords));
+            } catch (IOException | InvalidPathException ex) {
+                LOGGER.severe("Nie udało się odczytać listy ścieżek " + options.pathsFrom() + ": " + ex.getMessage());
+                System.exit(1);
+            }
         }
+    }
 
-        List<HistoryEntry> entries = new ArrayList<>();
+    private static void runWatch(List<String> args) {
+        CliOptions options;
         try {
-            for (String line : Files.readAllLines(historyFile.toPath())) {
-                if (line == null || line.isBlank()) {
-                    continue;
-                }
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.severe(ex.getMessage());
+            System.exit(1);
+            return;
+        }
 
-                if (line.startsWith(STRUCTURED_HISTORY_PREFIX)) {
-                    String payload = line.substring(STRUCTURED_HISTORY_PREFIX.length());
-                    String[] parts = payload.split("\t", 2);
-                    if (parts.length == 2) {
-                        Path oldPath = Path.of(parts[0]);
-                        Path newPath = Path.of(parts[1]);
-                        entries.add(new HistoryEntry(oldPath.getFileName().toString(), newPath.getFileName().toString(), oldPath, newPath));
-                    }
-                    continue;
-                }
+        List<String> positional = options.positional();
+        if (positional.isEmpty() || options.dryRun() || options.planned() || options.incremental()) {
+            LOGGER.severe("Tryb --watch wymaga argumentów: [--debounce=MS] [--durability=none|periodic|group-commit] [--log-level=LEVEL] <katalog> [dodatkowe-zakazane-słowo-1] ...");
+            System.exit(1);
+            return;
+        }
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.setHistoryDurability(options.durability());
+            renamer.setLogLevel(options.logLevel());
+            renamer.setMetricsFile(options.metricsFile());
+            renamer.setNameCacheSize(options.nameCacheSize());
+            renamer.setWalkFilter(options.walkFilter(renamer.walkFilter()));
+
+            LinkedHashSet<String> mergedForbiddenWords = new LinkedHashSet<>(renamer.readForbiddenWordsFromFile());
+            mergedForbiddenWords.addAll(positional.subList(1, positional.size()));
+            if (mergedForbiddenWords.isEmpty()) {
+                LOGGER.severe("Brak zakazanych słów. Uzupełnij blacklist.txt lub podaj dodatkowe słowa w CLI.");
+                System.exit(1);
+                return;
+            }
 
-                if (!line.startsWith(HISTORY_PREFIX)) {
-                    continue;
+            Thread watchThread = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                watchThread.interrupt();
+                try {
+                    watchThread.join(TimeUnit.SECONDS.toMillis(5));
+                } catch (InterruptedException ignored) {
+                    // shutting down anyway
                 }
+            }));
+            renamer.watchDirectory(positional.getFirst(), new ArrayList<>(mergedForbiddenWords), options.debounce());
+        }
+    }
 
-                String payload = line.substring(HISTORY_PREFIX.length());
-                int separator = payload.lastIndexOf(HISTORY_SEPARATOR);
-                if (separator <= 0 || separator + HISTORY_SEPARATOR.length() >= payload.length()) {
-                    continue;
+    private static void runDaemon(List<String> args) {
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.severe(ex.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        try (DaemonServer server = new DaemonServer(options)) {
+            Thread daemonThread = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.shutdown();
+                    daemonThread.join(TimeUnit.SECONDS.toMillis(5));
+                } catch (IOException ex) {
+                    LOGGER.warning("Nie udało się zamknąć gniazda demona: " + ex.getMessage());
+                } catch (InterruptedException ignored) {
+                    // shutting down anyway
                 }
+            }));
+            server.serve();
+        } catch (IOException ex) {
+            LOGGER.severe("Nie udało się uruchomić demona: " + ex.getMessage());
+            System.exit(1);
+        }
+        LOGGER.info("Demon zakończył działanie.");
+    }
+
+    private static void runClient(List<String> args) {
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.severe(ex.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        if (options.positional().size() < 2) {
+            LOGGER.severe("Tryb --client wymaga argumentów: [--socket=ŚCIEŻKA] clean|dry-run|undo [opcje] <katalog> [dodatkowe-zakazane-słowo-1] ...");
+            System.exit(1);
+            return;
+        }
+
+        List<String> jobArgs = args.stream().filter(arg -> !arg.regionMatches(true, 0, "--socket=", 0, "--socket=".length())).toList();
+        try {
+            System.exit(DaemonClient.submit(options.socket(), DaemonClient.resolvePaths(jobArgs), System.out));
+        } catch (IOException | IllegalArgumentException ex) {
+            LOGGER.severe("Nie udało się wysłać zadania do demona (" + options.socket().toAbsolutePath() + "): " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void runUndo(List<String> args) {
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.severe(ex.getMessage());
+            System.exit(1);
+            return;
+        }
 
-                String oldName = payload.substring(0, separator);
-                String newName = payload.substring(separator + HISTORY_SEPARATOR.length());
-                entries.add(new HistoryEntry(oldName, newName, null, null));
+        if (options.positional().size() != 1) {
+            LOGGER.severe("Tryb --undo-history wymaga argumentu: [--session=ID | --last-session] [--prefix=ŚCIEŻKA] <katalog>");
+            System.exit(1);
+            return;
+        }
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.setHistoryDurability(options.durability());
+            renamer.setLogLevel(options.logLevel());
+            renamer.setMetricsFile(options.metricsFile());
+            renamer.undoRenamesFromHistory(options.positional().getFirst(), options.historySelection());
+        }
+    }
+
+    void listHistorySessions() {
+        try {
+            List<HistorySession> sessions = historyStore.sessions();
+            if (sessions.isEmpty()) {
+                LOGGER.info("Historia zmian jest pusta.");
+                return;
+            }
+            for (HistorySession session : sessions) {
+                LOGGER.info(session.isLegacy()
+                        ? "Sesja 0: wpisy sprzed wprowadzenia sesji (" + (session.end() - session.start()) + " B)"
+                        : "Sesja " + session.id() + ": " + session.startedAt() + ", katalog=" + session.root() + " (" + (session.end() - session.start()) + " B)");
             }
         } catch (IOException ex) {
-            LOGGER.severe("Nie udało się odczytać historii zmian: " + ex.getMessage());
+            LOGGER.severe("Nie udało się odczytać sesji historii: " + ex.getMessage());
         }
+    }
 
-        return entries;
+    void compactHistory() {
+        try {
+            HistoryStore.CompactionResult result = historyStore.compact();
+            LOGGER.info("Historia skompaktowana: " + result.bytesBefore() + " B -> " + result.bytesAfter() + " B, wpisy="
+                    + result.entriesAfter() + ", sesje=" + result.sessionsAfter());
+        } catch (IOException ex) {
+            LOGGER.severe("Nie udało się skompaktować historii: " + ex.getMessage());
+        }
     }
 
     void undoRenamesFromHistory(String directory) {
-        setProgressIndeterminate(true);
+        undoRenamesFromHistory(directory, HistorySelection.ALL);
+    }
+
+    void undoRenamesFromHistory(String directory, HistorySelection selection) {
+        progress.begin();
         setStatus("Cofanie zmian nazw... Proszę czekać.");
         Path root = Paths.get(directory);
         if (!Files.isDirectory(root)) {
             LOGGER.severe("Podana ścieżka nie jest katalogiem: " + directory);
-            setProgressIndeterminate(false);
+            progress.finish();
             setStatus("Błędny katalog: " + directory);
             return;
         }
 
-        List<HistoryEntry> entries = readHistoryEntries();
-        if (entries.isEmpty()) {
+        metrics = new RunMetrics("undo");
+        long[] read = new long[1];
+        LongAdder reverted = new LongAdder();
+        LongAdder skipped = new LongAdder();
+        NameIndex[] index = new NameIndex[1];
+        FileStoreLimiter io = FileStoreLimiter.create(parallelism);
+        try (HistoryJournal journal = historyStore.openAppend(historyDurability);
+             RunMetrics.Phase ignored = metrics.phase("undo");
+             UndoScheduler scheduler = new UndoScheduler(parallelism, UndoScheduler.DEFAULT_BATCH_SIZE, entry -> {
+                 metrics.increment(RunMetrics.Counter.VISITED);
+                 boolean success = entry.hasAbsolutePaths()
+                         ? revertByAbsolutePath(entry, index[0], journal, io)
+                         : revertByName(index[0], entry.oldName(), entry.newName(), journal, io);
+                 metrics.increment(success ? RunMetrics.Counter.RENAMED : RunMetrics.Counter.SKIPPED);
+                 (success ? reverted : skipped).increment();
+                 progress.advance();
+             }, progress::isCancelled)) {
+            progress.setTotal(-1);
+            historyStore.forEachEntryReversed(selection, entry -> {
+                if (progress.isCancelled()) {
+                    return false;
+                }
+                read[0]++;
+                if (!entry.hasAbsolutePaths() && index[0] == null) {
+                    scheduler.flush();
+                    try (RunMetrics.Phase indexing = metrics.phase("name-index")) {
+                        index[0] = buildNameIndex(root);
+                    }
+                }
+                scheduler.submit(entry);
+                return true;
+            });
+            scheduler.flush();
+        } catch (IOException ex) {
+            LOGGER.severe("Nie udało się odczytać historii lub zapisać cofniętych zmian: " + ex.getMessage());
+        }
+
+        if (read[0] == 0) {
             LOGGER.severe("Brak wpisów historii do cofnięcia.");
-            setProgressIndeterminate(false);
+            progress.finish();
             setStatus("Brak wpisów historii.");
             return;
         }
 
-        int reverted = 0;
-        int skipped = 0;
-        for (int i = entries.size() - 1; i >= 0; i--) {
-            HistoryEntry entry = entries.get(i);
-            boolean success = entry.hasAbsolutePaths()
-                    ? revertByAbsolutePath(entry)
-                    : revertByName(root, entry.oldName, entry.newName);
-            if (success) {
-                reverted++;
-            } else {
-                skipped++;
-            }
-        }
-
+        diagnostics.flush();
+        logIoLimits(io);
+        publishMetrics();
         LOGGER.info("Cofanie zmian zakończone. Przywrócone=" + reverted + ", pominięte=" + skipped);
-        setProgressIndeterminate(false);
+        progress.finish();
         setStatus("Cofanie zakończone. Przywrócone=" + reverted + ", pominięte=" + skipped);
     }
 
-    private boolean revertByAbsolutePath(HistoryEntry entry) {
-        if (!Files.exists(entry.newPath)) {
+    private boolean revertByAbsolutePath(HistoryEntry entry, NameIndex index, HistoryJournal journal, FileStoreLimiter io) {
+        if (!Files.exists(entry.newPath())) {
             return false;
         }
 
-        if (Files.exists(entry.oldPath)) {
-            LOGGER.severe("Pominięto cofnięcie (cel już istnieje): " + entry.oldPath);
+        if (Files.exists(entry.oldPath())) {
+            LOGGER.severe("Pominięto cofnięcie (cel już istnieje): " + entry.oldPath());
             return false;
         }
 
         try {
-            Files.move(entry.newPath, entry.oldPath);
-            LOGGER.info("Przywrócono nazwę: " + entry.newPath + " -> " + entry.oldPath);
+            io.run(entry.newPath(), () -> metrics.timeMove(entry.newPath(), entry.oldPath(), () -> Files.move(entry.newPath(), entry.oldPath())));
+            if (index != null && entry.oldPath().getParent() != null && entry.oldPath().getParent().equals(entry.newPath().getParent())) {
+                synchronized (index) {
+                    index.renamed(entry.newPath(), entry.oldName());
+                }
+            }
+            recordReverted(journal, entry.oldPath(), entry.newPath());
+            LOGGER.info("Przywrócono nazwę: " + entry.newPath() + " -> " + entry.oldPath());
             return true;
         } catch (IOException ex) {
-            LOGGER.severe("Nie udało się cofnąć zmiany dla: " + entry.newPath + " (" + ex.getMessage() + ")");
+            LOGGER.severe("Nie udało się cofnąć zmiany dla: " + entry.newPath() + " (" + ex.getMessage() + ")");
             return false;
         }
     }
 
-    private boolean revertByName(Path root, String oldName, String newName) {
-        List<Path> matches = findPathsByName(root, newName);
+    private void recordReverted(HistoryJournal journal, Path oldPath, Path newPath) {
+        try {
+            metrics.timeJournal(() -> journal.recordReverted(oldPath, newPath));
+        } catch (IOException ex) {
+            LOGGER.severe("Nie udało się zapisać cofnięcia w historii: " + newPath + " (" + ex.getMessage() + ")");
+        }
+    }
+
+    private boolean revertByName(NameIndex index, String oldName, String newName, HistoryJournal journal, FileStoreLimiter io) {
+        List<Path> matches = index.find(newName);
 
         if (matches.size() != 1) {
             LOGGER.severe("Pominięto cofnięcie dla '" + newName + "' (liczba dopasowań=" + matches.size() + ")");
@@ -526,7 +1095,9 @@ public class FileRenamer {
         }
 
         try {
-            Files.move(current, target);
+            io.run(current, () -> metrics.timeMove(current, target, () -> Files.move(current, target)));
+            index.renamed(current, oldName);
+            recordReverted(journal, target, current);
             LOGGER.info("Przywrócono nazwę: " + current + " -> " + target);
             return true;
         } catch (IOException ex) {
@@ -535,142 +1106,39 @@ public class FileRenamer {
         }
     }
 
-    private List<Path> findPathsByName(Path root, String nameToFind) {
-        List<Path> matches = new ArrayList<>();
+    private NameIndex buildNameIndex(Path root) {
         try {
-            Files.walkFileTree(root, new SimpleFileVisitor<>() {
-                @Override
-                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                    if (dir.getFileName() != null && dir.getFileName().toString().equals(nameToFind)) {
-                        matches.add(dir);
-                    }
-                    return FileVisitResult.CONTINUE;
-                }
-
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                    if (file.getFileName() != null && file.getFileName().toString().equals(nameToFind)) {
-                        matches.add(file);
-                    }
-                    return FileVisitResult.CONTINUE;
-                }
-
-                @Override
-                public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                    handleVisitFailure(file, exc);
-                    return FileVisitResult.CONTINUE;
-                }
-            });
+            return NameIndex.build(root, (path, exc) -> handleVisitFailure(path, exc, metrics));
         } catch (IOException ex) {
             LOGGER.severe("Nie udało się przeszukać katalogu do cofania zmian: " + ex.getMessage());
+            return NameIndex.empty();
         }
-        return matches;
-    }
-
-    private static void logGuiTroubleshooting(Throwable ex) {
-        String display = System.getenv("DISPLAY");
-        String waylandDisplay = System.getenv("WAYLAND_DISPLAY");
-        String xdgSessionType = System.getenv("XDG_SESSION_TYPE");
-        String xdgRuntimeDir = System.getenv("XDG_RUNTIME_DIR");
-        String xauthority = System.getenv("XAUTHORITY");
-        String javaHeadless = System.getProperty("java.awt.headless");
-        String javaVersion = System.getProperty("java.version");
-        String javaVendor = System.getProperty("java.vendor");
-        String javaRuntime = System.getProperty("java.runtime.name");
-        String sudoUser = System.getenv("SUDO_USER");
-        String currentUser = System.getProperty("user.name");
-
-        LOGGER.severe("Brak dostępu do sesji graficznej AWT/Swing.");
-        LOGGER.severe("Przyczyna: " + ex.getClass().getSimpleName() + ": " + ex.getMessage());
-        LOGGER.severe("Użytkownik procesu=" + currentUser + ", SUDO_USER=" + sudoUser);
-        LOGGER.severe("JVM=" + javaRuntime + " " + javaVersion + " (" + javaVendor + "), java.awt.headless=" + javaHeadless);
-        LOGGER.severe("DISPLAY=" + display + ", WAYLAND_DISPLAY=" + waylandDisplay + ", XDG_SESSION_TYPE=" + xdgSessionType + ", XDG_RUNTIME_DIR=" + xdgRuntimeDir + ", XAUTHORITY=" + xauthority);
-
-        String lowered = String.valueOf(ex.getMessage()).toLowerCase(Locale.ROOT);
-        if (lowered.contains("headful library") || lowered.contains("headless")) {
-            LOGGER.severe("To wygląda na środowisko JRE bez pełnych bibliotek GUI (np. pakiet headless) albo wymuszony tryb headless.");
-            LOGGER.severe("Na Debianie sprawdź: java -version oraz czy masz pełny pakiet JRE/JDK (nie headless). Przykład: sudo apt install openjdk-21-jre");
-        }
-
-        if ("root".equals(currentUser) && sudoUser != null) {
-            LOGGER.severe("Aplikacja działa jako root przez sudo. W Wayland to zwykle blokuje GUI (brak dostępu do sesji użytkownika).");
-            LOGGER.severe("Uruchom bez sudo, albo zachowaj zmienne sesji i autoryzację X11/Wayland.");
-            LOGGER.severe("Przykład (X11): sudo --preserve-env=DISPLAY,XAUTHORITY java -jar target/T.F.N.C.-1.0-beta-4.jar --gui");
-            LOGGER.severe("Przykład (Wayland): sudo --preserve-env=WAYLAND_DISPLAY,XDG_RUNTIME_DIR java -jar target/T.F.N.C.-1.0-beta-4.jar --gui");
-        }
-
-            LOGGER.severe("Jeśli chcesz GUI na Debian/KDE/Wayland, uruchom aplikację w tej samej sesji użytkownika co Plasma.");
-        LOGGER.severe("W przeciwnym razie użyj trybu CLI: --cli <katalog> [dodatkowe-zakazane-słowo-1] ...");
-    }
-
-    private static int runGuiDiagnostics() {
-        String display = System.getenv("DISPLAY");
-        String waylandDisplay = System.getenv("WAYLAND_DISPLAY");
-        String xdgRuntimeDir = System.getenv("XDG_RUNTIME_DIR");
-        String xauthority = System.getenv("XAUTHORITY");
-        String currentUser = System.getProperty("user.name");
-        String sudoUser = System.getenv("SUDO_USER");
-        String javaVersion = System.getProperty("java.version");
-        String javaVendor = System.getProperty("java.vendor");
-        String javaRuntime = System.getProperty("java.runtime.name");
-
-        LOGGER.info("=== Diagnostyka GUI ===");
-        LOGGER.info("Użytkownik procesu=" + currentUser + ", SUDO_USER=" + sudoUser);
-        LOGGER.info("JVM=" + javaRuntime + " " + javaVersion + " (" + javaVendor + ")");
-        LOGGER.info("java.awt.headless=" + System.getProperty("java.awt.headless"));
-        LOGGER.info("DISPLAY=" + display);
-        LOGGER.info("WAYLAND_DISPLAY=" + waylandDisplay);
-        LOGGER.info("XDG_RUNTIME_DIR=" + xdgRuntimeDir);
-        LOGGER.info("XAUTHORITY=" + xauthority);
-
-        boolean desktopModulePresent = ModuleLayer.boot().findModule("java.desktop").isPresent();
-        LOGGER.info("Moduł java.desktop dostępny=" + desktopModulePresent);
-        LOGGER.info("GraphicsEnvironment.isHeadless()=" + GraphicsEnvironment.isHeadless());
-
-        if (display != null) {
-            Path x11Socket = Path.of("/tmp/.X11-unix", display.replace(":", "X"));
-            LOGGER.info("X11 socket istnieje=" + Files.exists(x11Socket) + " (" + x11Socket + ")");
-        }
-
-        if (waylandDisplay != null && xdgRuntimeDir != null) {
-            Path waylandSocket = Path.of(xdgRuntimeDir, waylandDisplay);
-            LOGGER.info("Wayland socket istnieje=" + Files.exists(waylandSocket) + " (" + waylandSocket + ")");
-        }
-
-        if (!desktopModulePresent) {
-            LOGGER.severe("Wniosek: brak modułu java.desktop w runtime. To wyklucza GUI.");
-            return 1;
-        }
-
-        boolean likelyNoGuiSession = (display == null && waylandDisplay == null) || xdgRuntimeDir == null;
-        if (likelyNoGuiSession) {
-            LOGGER.severe("Wniosek: proces nie ma poprawnego dostępu do sesji GUI.");
-            return 1;
-        }
-
-        LOGGER.info("Wniosek: środowisko wygląda na GUI-ready. Jeśli GUI nadal nie startuje, sprawdź czy używasz pakietu JRE/JDK bez headless i czy biblioteki X11 są doinstalowane.");
-        LOGGER.info("Debian (przykład): sudo apt install openjdk-21-jre libx11-6 libxext6 libxrender1 libxtst6 libxi6 libfreetype6 libfontconfig1");
-        return 0;
     }
 
     public static void main(String[] args) {
         boolean forceCli = Arrays.stream(args).anyMatch(arg -> "--cli".equalsIgnoreCase(arg));
         boolean forceGui = Arrays.stream(args).anyMatch(arg -> "--gui".equalsIgnoreCase(arg));
         boolean diagnoseGui = Arrays.stream(args).anyMatch(arg -> "--diagnose-gui".equalsIgnoreCase(arg));
+        boolean watch = Arrays.stream(args).anyMatch(arg -> "--watch".equalsIgnoreCase(arg));
+        boolean daemon = Arrays.stream(args).anyMatch(arg -> "--daemon".equalsIgnoreCase(arg));
+        boolean client = Arrays.stream(args).anyMatch(arg -> "--client".equalsIgnoreCase(arg));
         boolean undoHistory = Arrays.stream(args).anyMatch(arg -> "--undo-history".equalsIgnoreCase(arg));
+        boolean listHistory = Arrays.stream(args).anyMatch(arg -> "--history-sessions".equalsIgnoreCase(arg));
+        boolean compactHistory = Arrays.stream(args).anyMatch(arg -> "--compact-history".equalsIgnoreCase(arg));
 
-        if ((forceCli && forceGui) || (diagnoseGui && (forceCli || forceGui || undoHistory)) || (undoHistory && (forceCli || forceGui))) {
-            LOGGER.severe("Nieprawidłowa kombinacja flag. Użyj tylko jednego trybu: --gui, --cli, --undo-history lub --diagnose-gui.");
+        long selectedModes = MODE_FLAGS.stream().filter(flag -> Arrays.stream(args).anyMatch(flag::equalsIgnoreCase)).count();
+        if (selectedModes > 1) {
+            LOGGER.severe("Nieprawidłowa kombinacja flag. Użyj tylko jednego trybu: " + String.join(", ", MODE_FLAGS) + ".");
             System.exit(2);
             return;
         }
 
         List<String> filteredArgs = Arrays.stream(args)
-                .filter(arg -> !"--cli".equalsIgnoreCase(arg) && !"--gui".equalsIgnoreCase(arg) && !"--diagnose-gui".equalsIgnoreCase(arg) && !"--undo-history".equalsIgnoreCase(arg))
+                .filter(arg -> MODE_FLAGS.stream().noneMatch(arg::equalsIgnoreCase))
                 .toList();
 
         if (diagnoseGui) {
-            System.exit(runGuiDiagnostics());
+            System.exit(FileRenamerGui.runGuiDiagnostics());
             return;
         }
 
@@ -679,34 +1147,56 @@ public class FileRenamer {
             return;
         }
 
-        if (undoHistory) {
-            if (filteredArgs.size() != 1) {
-                LOGGER.severe("Tryb --undo-history wymaga argumentu: <katalog>");
-                System.exit(1);
-                return;
-            }
-            new FileRenamer(true).undoRenamesFromHistory(filteredArgs.getFirst());
+        if (watch) {
+            runWatch(filteredArgs);
             return;
         }
 
-        try {
-            new FileRenamer(false);
-        } catch (HeadlessException | AWTError | UnsatisfiedLinkError ex) {
-            logGuiTroubleshooting(ex);
+        if (daemon) {
+            runDaemon(filteredArgs);
+            return;
+        }
 
-            if (forceGui) {
-                System.exit(1);
-                return;
+        if (client) {
+            runClient(filteredArgs);
+            return;
+        }
+
+        if (undoHistory) {
+            runUndo(filteredArgs);
+            return;
+        }
+
+        if (listHistory) {
+            try (FileRenamer renamer = new FileRenamer()) {
+                renamer.listHistorySessions();
             }
+            return;
+        }
 
-            if (filteredArgs.size() >= 2) {
-                LOGGER.info("Przełączanie do trybu CLI po nieudanej próbie startu GUI.");
-                runCli(filteredArgs);
-                return;
+        if (compactHistory) {
+            try (FileRenamer renamer = new FileRenamer()) {
+                renamer.compactHistory();
             }
+            return;
+        }
+
+        if (FileRenamerGui.open()) {
+            return;
+        }
 
-            LOGGER.severe("Brak argumentów do trybu CLI. Podaj: --cli <katalog> [dodatkowe-zakazane-słowo-1] [dodatkowe-zakazane-słowo-2] ...");
+        if (forceGui) {
             System.exit(1);
+            return;
+        }
+
+        if (filteredArgs.size() >= 2) {
+            LOGGER.info("Przełączanie do trybu CLI po nieudanej próbie startu GUI.");
+            runCli(filteredArgs);
+            return;
         }
+
+        LOGGER.severe("Brak argumentów do trybu CLI. Podaj: --cli <katalog> [dodatkowe-zakazane-słowo-1] [dodatkowe-zakazane-słowo-2] ...");
+        System.exit(1);
     }
 }
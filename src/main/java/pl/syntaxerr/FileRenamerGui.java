@@ -0,0 +1,299 @@
+package pl.syntaxerr;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+// Swing front end. Kept apart from FileRenamer so that the CLI, daemon and undo paths never load java.desktop classes.
+final class FileRenamerGui {
+    private static final Logger LOGGER = Logger.getLogger(FileRenamerGui.class.getName());
+    private static final int PROGRESS_REFRESH_MILLIS = 100;
+
+    private final FileRenamer renamer;
+    private final RunProgress progress;
+    private final JTextField directoryField;
+    private final JTextArea forbiddenWordsArea;
+    private final JFrame frame;
+    private final JProgressBar progressBar;
+    private final JLabel statusLabel;
+    private final javax.swing.Timer progressTimer;
+
+    private interface BackgroundTask {
+        void run() throws IOException;
+    }
+
+    static boolean open() {
+        try {
+            new FileRenamerGui(new FileRenamer());
+            return true;
+        } catch (HeadlessException | AWTError | UnsatisfiedLinkError ex) {
+            logGuiTroubleshooting(ex);
+            return false;
+        }
+    }
+
+    private FileRenamerGui(FileRenamer renamer) {
+        this.renamer = renamer;
+        this.progress = renamer.progress();
+
+        frame = new JFrame("T.F.N.C. - Torrent File Name Cleaner");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                renamer.close();
+            }
+        });
+        frame.setSize(400, 300);
+
+        progressBar = new JProgressBar();
+        statusLabel = new JLabel("Ready...");
+        progressTimer = new javax.swing.Timer(PROGRESS_REFRESH_MILLIS, e -> refreshProgress());
+
+        directoryField = new JTextField(20); // Set the width of the text field
+        directoryField.setToolTipText("Enter the directory path here or select using the button");
+        JButton directoryChooserButton = new JButton("Select directory");
+
+        forbiddenWordsArea = new JTextArea();
+        forbiddenWordsArea.setLineWrap(true);
+        forbiddenWordsArea.setWrapStyleWord(true);
+        forbiddenWordsArea.setToolTipText("Enter forbidden words here, one per line");
+
+        JButton runButton = new JButton("Run");
+        JButton undoButton = new JButton("Undo from history");
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        List<JButton> runControls = List.of(runButton, undoButton, directoryChooserButton);
+
+        forbiddenWordsArea.setText(String.join(System.lineSeparator(), renamer.readForbiddenWordsFromFile()));
+
+        JPanel directoryPanel = new JPanel(new FlowLayout());
+        directoryPanel.add(directoryField);
+        directoryPanel.add(Box.createVerticalStrut(10)); // Add vertical spacing
+        directoryPanel.add(directoryChooserButton);
+
+        runButton.addActionListener(e -> {
+            String directory = directoryField.getText();
+            List<String> forbiddenWords = FileRenamer.parseForbiddenWords(forbiddenWordsArea.getText());
+            runInBackground(runControls, cancelButton, () -> {
+                setStatus("Counting files and directories...");
+                progress.setTotal(renamer.countEntries(Paths.get(directory)));
+                if (progress.isCancelled()) {
+                    return;
+                }
+                renamer.renameFilesAndDirectoriesInDirectory(directory, forbiddenWords);
+                renamer.saveForbiddenWordsToFile(forbiddenWords);
+            });
+        });
+
+        cancelButton.addActionListener(e -> {
+            progress.cancel();
+            cancelButton.setEnabled(false);
+            setStatus("Cancelling...");
+        });
+
+        undoButton.addActionListener(e -> {
+            String directory = directoryField.getText();
+            if (directory == null || directory.isBlank()) {
+                setStatus("Podaj katalog do cofania zmian.");
+                LOGGER.severe("Brak katalogu dla cofania zmian.");
+                return;
+            }
+            runInBackground(runControls, cancelButton, () -> renamer.undoRenamesFromHistory(directory));
+        });
+
+        directoryChooserButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setCurrentDirectory(new File("."));
+            chooser.setDialogTitle("Select directory");
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            chooser.setAcceptAllFileFilterUsed(false);
+
+            if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                directoryField.setText(chooser.getSelectedFile().toString());
+            }
+        });
+
+        frame.setLayout(new BorderLayout());
+
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(new JLabel("Directory:"), BorderLayout.NORTH);
+        northPanel.add(directoryPanel, BorderLayout.CENTER);
+
+        JPanel centerPanel = new JPanel(new BorderLayout());
+        centerPanel.add(new JLabel("Forbidden words:"), BorderLayout.NORTH);
+        centerPanel.add(forbiddenWordsArea, BorderLayout.CENTER);
+
+        JPanel progressPanel = new JPanel(new BorderLayout());
+        progressPanel.add(statusLabel, BorderLayout.NORTH);
+        progressPanel.add(progressBar, BorderLayout.SOUTH);
+
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonsPanel.add(runButton);
+        buttonsPanel.add(undoButton);
+        buttonsPanel.add(cancelButton);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(progressPanel, BorderLayout.NORTH); // Add the progress panel here
+        southPanel.add(buttonsPanel, BorderLayout.SOUTH);
+
+        frame.add(northPanel, BorderLayout.NORTH);
+        frame.add(centerPanel, BorderLayout.CENTER);
+        frame.add(southPanel, BorderLayout.SOUTH);
+        frame.setVisible(true);
+        frame.revalidate();
+        frame.repaint();
+    }
+
+    private void setStatus(String text) {
+        progress.setStatus(text);
+    }
+
+    private void runInBackground(List<JButton> controls, JButton cancelButton, BackgroundTask task) {
+        progress.reset();
+        progress.begin();
+        controls.forEach(button -> button.setEnabled(false));
+        cancelButton.setEnabled(true);
+        progressTimer.start();
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                task.run();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                progressTimer.stop();
+                try {
+                    get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    LOGGER.severe("An error occurred: " + ex.getCause().getMessage());
+                    setStatus("Error: " + ex.getCause().getMessage());
+                }
+                if (progress.isCancelled()) {
+                    setStatus("Cancelled. Changes made so far are recorded in history.");
+                }
+                refreshProgress();
+                progressBar.setIndeterminate(false);
+                controls.forEach(button -> button.setEnabled(true));
+                cancelButton.setEnabled(false);
+            }
+        }.execute();
+    }
+
+    private void refreshProgress() {
+        long total = progress.total();
+        long done = progress.done();
+        progressBar.setIndeterminate(total < 0 && progress.isRunning());
+        progressBar.setMaximum(1000);
+        progressBar.setValue(progress.permille());
+
+        String text = progress.status();
+        if (total > 0 && progress.isRunning()) {
+            Duration eta = progress.eta();
+            text += " " + Math.min(done, total) + "/" + total
+                    + (eta == null ? "" : String.format(", ETA %d:%02d", eta.toMinutes(), eta.toSecondsPart()));
+        }
+        statusLabel.setText(text);
+    }
+
+    private static void logGuiTroubleshooting(Throwable ex) {
+        String display = System.getenv("DISPLAY");
+        String waylandDisplay = System.getenv("WAYLAND_DISPLAY");
+        String xdgSessionType = System.getenv("XDG_SESSION_TYPE");
+        String xdgRuntimeDir = System.getenv("XDG_RUNTIME_DIR");
+        String xauthority = System.getenv("XAUTHORITY");
+        String javaHeadless = System.getProperty("java.awt.headless");
+        String javaVersion = System.getProperty("java.version");
+        String javaVendor = System.getProperty("java.vendor");
+        String javaRuntime = System.getProperty("java.runtime.name");
+        String sudoUser = System.getenv("SUDO_USER");
+        String currentUser = System.getProperty("user.name");
+
+        LOGGER.severe("Brak dostępu do sesji graficznej AWT/Swing.");
+        LOGGER.severe("Przyczyna: " + ex.getClass().getSimpleName() + ": " + ex.getMessage());
+        LOGGER.severe("Użytkownik procesu=" + currentUser + ", SUDO_USER=" + sudoUser);
+        LOGGER.severe("JVM=" + javaRuntime + " " + javaVersion + " (" + javaVendor + "), java.awt.headless=" + javaHeadless);
+        LOGGER.severe("DISPLAY=" + display + ", WAYLAND_DISPLAY=" + waylandDisplay + ", XDG_SESSION_TYPE=" + xdgSessionType + ", XDG_RUNTIME_DIR=" + xdgRuntimeDir + ", XAUTHORITY=" + xauthority);
+
+        String lowered = String.valueOf(ex.getMessage()).toLowerCase(Locale.ROOT);
+        if (lowered.contains("headful library") || lowered.contains("headless")) {
+            LOGGER.severe("To wygląda na środowisko JRE bez pełnych bibliotek GUI (np. pakiet headless) albo wymuszony tryb headless.");
+            LOGGER.severe("Na Debianie sprawdź: java -version oraz czy masz pełny pakiet JRE/JDK (nie headless). Przykład: sudo apt install openjdk-21-jre");
+        }
+
+        if ("root".equals(currentUser) && sudoUser != null) {
+            LOGGER.severe("Aplikacja działa jako root przez sudo. W Wayland to zwykle blokuje GUI (brak dostępu do sesji użytkownika).");
+            LOGGER.severe("Uruchom bez sudo, albo zachowaj zmienne sesji i autoryzację X11/Wayland.");
+            LOGGER.severe("Przykład (X11): sudo --preserve-env=DISPLAY,XAUTHORITY java -jar target/T.F.N.C.-1.0-beta-4.jar --gui");
+            LOGGER.severe("Przykład (Wayland): sudo --preserve-env=WAYLAND_DISPLAY,XDG_RUNTIME_DIR java -jar target/T.F.N.C.-1.0-beta-4.jar --gui");
+        }
+
+            LOGGER.severe("Jeśli chcesz GUI na Debian/KDE/Wayland, uruchom aplikację w tej samej sesji użytkownika co Plasma.");
+        LOGGER.severe("W przeciwnym razie użyj trybu CLI: --cli <katalog> [dodatkowe-zakazane-słowo-1] ...");
+    }
+
+    static int runGuiDiagnostics() {
+        String display = System.getenv("DISPLAY");
+        String waylandDisplay = System.getenv("WAYLAND_DISPLAY");
+        String xdgRuntimeDir = System.getenv("XDG_RUNTIME_DIR");
+        String xauthority = System.getenv("XAUTHORITY");
+        String currentUser = System.getProperty("user.name");
+        String sudoUser = System.getenv("SUDO_USER");
+        String javaVersion = System.getProperty("java.version");
+        String javaVendor = System.getProperty("java.vendor");
+        String javaRuntime = System.getProperty("java.runtime.name");
+
+        LOGGER.info("=== Diagnostyka GUI ===");
+        LOGGER.info("Użytkownik procesu=" + currentUser + ", SUDO_USER=" + sudoUser);
+        LOGGER.info("JVM=" + javaRuntime + " " + javaVersion + " (" + javaVendor + ")");
+        LOGGER.info("java.awt.headless=" + System.getProperty("java.awt.headless"));
+        LOGGER.info("DISPLAY=" + display);
+        LOGGER.info("WAYLAND_DISPLAY=" + waylandDisplay);
+        LOGGER.info("XDG_RUNTIME_DIR=" + xdgRuntimeDir);
+        LOGGER.info("XAUTHORITY=" + xauthority);
+
+        boolean desktopModulePresent = ModuleLayer.boot().findModule("java.desktop").isPresent();
+        LOGGER.info("Moduł java.desktop dostępny=" + desktopModulePresent);
+        LOGGER.info("GraphicsEnvironment.isHeadless()=" + GraphicsEnvironment.isHeadless());
+
+        if (display != null) {
+            Path x11Socket = Path.of("/tmp/.X11-unix", display.replace(":", "X"));
+            LOGGER.info("X11 socket istnieje=" + Files.exists(x11Socket) + " (" + x11Socket + ")");
+        }
+
+        if (waylandDisplay != null && xdgRuntimeDir != null) {
+            Path waylandSocket = Path.of(xdgRuntimeDir, waylandDisplay);
+            LOGGER.info("Wayland socket istnieje=" + Files.exists(waylandSocket) + " (" + waylandSocket + ")");
+        }
+
+        if (!desktopModulePresent) {
+            LOGGER.severe("Wniosek: brak modułu java.desktop w runtime. To wyklucza GUI.");
+            return 1;
+        }
+
+        boolean likelyNoGuiSession = (display == null && waylandDisplay == null) || xdgRuntimeDir == null;
+        if (likelyNoGuiSession) {
+            LOGGER.severe("Wniosek: proces nie ma poprawnego dostępu do sesji GUI.");
+            return 1;
+        }
+
+        LOGGER.info("Wniosek: środowisko wygląda na GUI-ready. Jeśli GUI nadal nie startuje, sprawdź czy używasz pakietu JRE/JDK bez headless i czy biblioteki X11 są doinstalowane.");
+        LOGGER.info("Debian (przykład): sudo apt install openjdk-21-jre libx11-6 libxext6 libxrender1 libxtst6 libxi6 libfreetype6 libfontconfig1");
+        return 0;
+    }
+}
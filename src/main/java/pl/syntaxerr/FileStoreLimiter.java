@@ -0,0 +1,135 @@
+package pl.syntaxerr;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Caps in-flight file operations per FileStore with an AIMD limit driven by observed latency: the limit grows by one
+// per round of fast operations and is cut when latency rises well above the best seen on that mount, so SMB/NFS shares
+// settle on the concurrency the filer can take while local disks quickly reach the thread count.
+final class FileStoreLimiter {
+    private static final int MAX_CACHED_DIRECTORIES = 4_096;
+    private static final FileStoreLimiter UNLIMITED = new FileStoreLimiter(1);
+
+    private final int maxInFlight;
+    private final Map<Path, FileStore> storesByDirectory = new ConcurrentHashMap<>();
+    private final Map<FileStore, Limit> limits = new ConcurrentHashMap<>();
+
+    private FileStoreLimiter(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    static FileStoreLimiter create(int maxInFlight) {
+        return maxInFlight > 1 ? new FileStoreLimiter(maxInFlight) : UNLIMITED;
+    }
+
+    void run(Path path, RunMetrics.IoAction action) throws IOException {
+        Limit limit = maxInFlight > 1 ? limitFor(path) : null;
+        if (limit == null) {
+            action.run();
+            return;
+        }
+
+        limit.acquire();
+        long started = System.nanoTime();
+        try {
+            action.run();
+        } finally {
+            limit.release(System.nanoTime() - started);
+        }
+    }
+
+    List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        limits.forEach((store, limit) -> lines.add(limit.describe(store)));
+        return lines;
+    }
+
+    private Limit limitFor(Path path) {
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory == null) {
+            return null;
+        }
+        FileStore store = storesByDirectory.get(directory);
+        if (store == null) {
+            try {
+                store = Files.getFileStore(directory);
+            } catch (IOException ex) {
+                return null;
+            }
+            if (storesByDirectory.size() >= MAX_CACHED_DIRECTORIES) {
+                storesByDirectory.clear();
+            }
+            storesByDirectory.put(directory, store);
+        }
+        return limits.computeIfAbsent(store, key -> new Limit(maxInFlight));
+    }
+
+    static final class Limit {
+        private static final double BACKOFF = 0.7;
+        private static final double TOLERANCE = 2.0;
+        private static final double BASELINE_DRIFT = 0.01;
+        private static final long SLACK_NANOS = 1_000_000;
+
+        private final int max;
+        private double limit = 1;
+        private int inFlight;
+        private double baselineNanos = Double.NaN;
+        private long lastDecrease = System.nanoTime();
+
+        Limit(int max) {
+            this.max = max;
+        }
+
+        synchronized void acquire() throws InterruptedIOException {
+            try {
+                while (inFlight >= (int) limit) {
+                    wait();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Przerwano oczekiwanie na operację dyskową");
+            }
+            inFlight++;
+        }
+
+        // The baseline follows the fastest operations and drifts up slowly, so a mount that gets permanently slower
+        // is not treated as congested forever. Jitter below SLACK_NANOS is ignored, which keeps local disks at the
+        // maximum, and at most one decrease happens per baseline interval.
+        synchronized void release(long latencyNanos) {
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            if (Double.isNaN(baselineNanos) || latencyNanos < baselineNanos) {
+                baselineNanos = latencyNanos;
+            } else {
+                baselineNanos += (latencyNanos - baselineNanos) * BASELINE_DRIFT;
+            }
+
+            long now = System.nanoTime();
+            if (latencyNanos > TOLERANCE * baselineNanos + SLACK_NANOS) {
+                if (now - lastDecrease > Math.max(baselineNanos, SLACK_NANOS)) {
+                    limit = Math.max(1, limit * BACKOFF);
+                    lastDecrease = now;
+                }
+            } else if (saturated) {
+                limit = Math.min(max, limit + 1 / limit);
+            }
+            notifyAll();
+        }
+
+        synchronized int limit() {
+            return (int) limit;
+        }
+
+        private synchronized String describe(FileStore store) {
+            return store.name() + " (" + store.type() + "): limit=" + (int) limit + "/" + max
+                    + String.format(", bazowe opóźnienie=%.1f ms", baselineNanos / 1_000_000.0);
+        }
+    }
+}
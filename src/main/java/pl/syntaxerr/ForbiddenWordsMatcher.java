@@ -0,0 +1,323 @@
+package pl.syntaxerr;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+final class ForbiddenWordsMatcher {
+    private static final Logger LOGGER = Logger.getLogger(ForbiddenWordsMatcher.class.getName());
+    private static final int ROOT = 0;
+    private static final int[] NO_WORDS = new int[0];
+    static final String LITERAL_PREFIX = "literal:";
+    static final String GLOB_PREFIX = "glob:";
+    static final String REGEX_PREFIX = "regex:";
+    private static final Pattern BACKREFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+
+    private final String[] foldedWords;
+    private final Pattern[] patterns;
+    private final int[] ungatedRules;
+    private final Pattern ungatedFilter;
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] fail;
+    private final int[] outputLink;
+    private final int[][] wordsEndingAt;
+
+    private ForbiddenWordsMatcher(String[] foldedWords, Pattern[] patterns, int[] ungatedRules, Pattern ungatedFilter,
+                                  int[] edgeStart, char[] edgeChars, int[] edgeTargets,
+                                  int[] fail, int[] outputLink, int[][] wordsEndingAt) {
+        this.foldedWords = foldedWords;
+        this.patterns = patterns;
+        this.ungatedRules = ungatedRules;
+        this.ungatedFilter = ungatedFilter;
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.outputLink = outputLink;
+        this.wordsEndingAt = wordsEndingAt;
+    }
+
+    // Literal rules are matched by the automaton directly. Glob and regex rules enter it through a literal that every
+    // match must contain, so a pattern is only evaluated for names where it can match at all.
+    static ForbiddenWordsMatcher compile(List<String> forbiddenWords) {
+        String[] folded = new String[forbiddenWords.size()];
+        Pattern[] patterns = new Pattern[forbiddenWords.size()];
+        List<Integer> ungated = new ArrayList<>();
+        List<String> ungatedSources = new ArrayList<>();
+        boolean filterable = true;
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> words = new ArrayList<>();
+        children.add(new HashMap<>());
+        words.add(null);
+
+        for (int index = 0; index < forbiddenWords.size(); index++) {
+            String word = forbiddenWords.get(index);
+            if (word == null || word.isBlank()) {
+                continue;
+            }
+
+            String gate;
+            if (word.startsWith(REGEX_PREFIX) || word.startsWith(GLOB_PREFIX)) {
+                boolean glob = word.startsWith(GLOB_PREFIX);
+                String source = glob ? globToRegex(word.substring(GLOB_PREFIX.length())) : word.substring(REGEX_PREFIX.length());
+                try {
+                    patterns[index] = Pattern.compile(source, Pattern.CASE_INSENSITIVE);
+                } catch (PatternSyntaxException ex) {
+                    LOGGER.warning("Pominięto nieprawidłową regułę czarnej listy: " + word + " (" + ex.getDescription() + ")");
+                    continue;
+                }
+                gate = glob ? longestLiteral(word.substring(GLOB_PREFIX.length())) : "";
+                if (gate.isEmpty()) {
+                    ungated.add(index);
+                    ungatedSources.add(source);
+                    filterable &= !BACKREFERENCE.matcher(source).find();
+                    continue;
+                }
+                gate = fold(gate);
+            } else {
+                String literal = word.startsWith(LITERAL_PREFIX) ? word.substring(LITERAL_PREFIX.length()) : word;
+                if (literal.isEmpty()) {
+                    continue;
+                }
+                folded[index] = fold(literal);
+                gate = folded[index];
+            }
+
+            int state = ROOT;
+            for (int i = 0; i < gate.length(); i++) {
+                Map<Character, Integer> next = children.get(state);
+                Integer target = next.get(gate.charAt(i));
+                if (target == null) {
+                    target = children.size();
+                    next.put(gate.charAt(i), target);
+                    children.add(new HashMap<>());
+                    words.add(null);
+                }
+                state = target;
+            }
+            if (words.get(state) == null) {
+                words.set(state, new ArrayList<>());
+            }
+            words.get(state).add(index);
+        }
+
+        int nodes = children.size();
+        int[] edgeStart = new int[nodes + 1];
+        int edgeCount = 0;
+        for (int node = 0; node < nodes; node++) {
+            edgeStart[node] = edgeCount;
+            edgeCount += children.get(node).size();
+        }
+        edgeStart[nodes] = edgeCount;
+
+        char[] edgeChars = new char[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        int[][] wordsEndingAt = new int[nodes][];
+        for (int node = 0; node < nodes; node++) {
+            Character[] labels = children.get(node).keySet().toArray(new Character[0]);
+            Arrays.sort(labels);
+            for (int i = 0; i < labels.length; i++) {
+                edgeChars[edgeStart[node] + i] = labels[i];
+                edgeTargets[edgeStart[node] + i] = children.get(node).get(labels[i]);
+            }
+            List<Integer> ending = words.get(node);
+            wordsEndingAt[node] = ending == null ? NO_WORDS : ending.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int[] fail = new int[nodes];
+        int[] outputLink = new int[nodes];
+        Arrays.fill(outputLink, -1);
+        Pattern ungatedFilter = filterable ? combinedFilter(ungatedSources) : null;
+        ForbiddenWordsMatcher matcher = new ForbiddenWordsMatcher(folded, patterns,
+                ungated.stream().mapToInt(Integer::intValue).toArray(), ungatedFilter,
+                edgeStart, edgeChars, edgeTargets, fail, outputLink, wordsEndingAt);
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int edge = edgeStart[ROOT]; edge < edgeStart[ROOT + 1]; edge++) {
+            fail[edgeTargets[edge]] = ROOT;
+            queue.add(edgeTargets[edge]);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int edge = edgeStart[node]; edge < edgeStart[node + 1]; edge++) {
+                int child = edgeTargets[edge];
+                int fallback = fail[node];
+                int target;
+                while ((target = matcher.transition(fallback, edgeChars[edge])) < 0 && fallback != ROOT) {
+                    fallback = fail[fallback];
+                }
+                fail[child] = target < 0 ? ROOT : target;
+                outputLink[child] = wordsEndingAt[fail[child]].length > 0 ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+
+        return matcher;
+    }
+
+    // Rules that compile on their own can still clash once joined, e.g. two rules defining the same named group. Such a
+    // blacklist simply runs without the prefilter.
+    private static Pattern combinedFilter(List<String> sources) {
+        if (sources.isEmpty()) {
+            return null;
+        }
+        List<String> closed = sources.stream().map(ForbiddenWordsMatcher::closeQuote).toList();
+        try {
+            return Pattern.compile("(?:" + String.join(")|(?:", closed) + ")", Pattern.CASE_INSENSITIVE);
+        } catch (PatternSyntaxException ex) {
+            return null;
+        }
+    }
+
+    // A rule may leave a \Q quote open until the end of its pattern; once joined, that quote would swallow the rules after it.
+    private static String closeQuote(String source) {
+        boolean quoted = false;
+        for (int i = 0; i < source.length() - 1; i++) {
+            if (source.charAt(i) != '\\') {
+                continue;
+            }
+            char next = source.charAt(i + 1);
+            if (quoted) {
+                quoted = next != 'E';
+                if (!quoted) {
+                    i++;
+                }
+            } else {
+                quoted = next == 'Q';
+                i++;
+            }
+        }
+        return quoted ? source + "\\E" : source;
+    }
+
+    String clean(String name) {
+        String current = name;
+        int after = -1;
+        while (true) {
+            int word = firstMatchingWord(current, after);
+            if (word < 0) {
+                return current;
+            }
+            current = patterns[word] != null ? patterns[word].matcher(current).replaceAll("") : removeAll(current, foldedWords[word]);
+            after = word;
+        }
+    }
+
+    private int firstMatchingWord(String text, int after) {
+        int best = -1;
+        if (ungatedRules.length > 0 && (ungatedFilter == null || ungatedFilter.matcher(text).find())) {
+            best = firstWordAfter(ungatedRules, after);
+            if (best == after + 1) {
+                return best;
+            }
+        }
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            int target;
+            while ((target = transition(state, c)) < 0 && state != ROOT) {
+                state = fail[state];
+            }
+            state = target < 0 ? ROOT : target;
+
+            for (int node = wordsEndingAt[state].length > 0 ? state : outputLink[state]; node >= 0; node = outputLink[node]) {
+                int candidate = firstWordAfter(wordsEndingAt[node], after);
+                if (candidate >= 0 && (best < 0 || candidate < best)) {
+                    best = candidate;
+                    if (best == after + 1) {
+                        return best;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private int transition(int state, char c) {
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (edgeChars[mid] < c) {
+                low = mid + 1;
+            } else if (edgeChars[mid] > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    private static int firstWordAfter(int[] sortedWords, int after) {
+        int position = Arrays.binarySearch(sortedWords, after + 1);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        return position < sortedWords.length ? sortedWords[position] : -1;
+    }
+
+    // Only '*' and '?' are wildcards, so entries such as "[www.*.org]" keep their brackets literal. An inner '*' takes the
+    // shortest run so one rule cannot swallow the text between two separate tags; a trailing '*' runs to the end.
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i <= glob.length(); i++) {
+            char c = i < glob.length() ? glob.charAt(i) : '*';
+            if (c == '*' || c == '?') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+                if (i < glob.length()) {
+                    regex.append(c == '?' ? "[\\s\\S]" : i == glob.length() - 1 ? "[\\s\\S]*" : "[\\s\\S]*?");
+                }
+                literalStart = i + 1;
+            }
+        }
+        return regex.toString();
+    }
+
+    private static String longestLiteral(String glob) {
+        String longest = "";
+        for (String part : glob.split("[*?]")) {
+            if (part.length() > longest.length()) {
+                longest = part;
+            }
+        }
+        return longest;
+    }
+
+    private static String removeAll(String text, String foldedWord) {
+        String foldedText = fold(text);
+        StringBuilder result = new StringBuilder(text.length());
+        int from = 0;
+        int found;
+        while ((found = foldedText.indexOf(foldedWord, from)) >= 0) {
+            result.append(text, from, found);
+            from = found + foldedWord.length();
+        }
+        result.append(text, from, text.length());
+        return result.toString();
+    }
+
+    // Pattern's (?i) without UNICODE_CASE folds US-ASCII letters only, so the matcher does the same.
+    private static String fold(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static char fold(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -0,0 +1,9 @@
+package pl.syntaxerr;
+
+import java.nio.file.Path;
+
+record HistoryEntry(String oldName, String newName, Path oldPath, Path newPath) {
+    boolean hasAbsolutePaths() {
+        return oldPath != null && newPath != null;
+    }
+}
@@ -0,0 +1,36 @@
+package pl.syntaxerr;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+final class HistoryFormat {
+    static final String HISTORY_PREFIX = "Changed file/directory name: ";
+    static final String HISTORY_SEPARATOR = " to ";
+    static final String STRUCTURED_HISTORY_PREFIX = "RENAMED\t";
+    static final String ABORTED_HISTORY_PREFIX = "ABORTED\t";
+    static final String REVERTED_HISTORY_PREFIX = "REVERTED\t";
+    static final String SESSION_PREFIX = "SESSION\t";
+
+    private HistoryFormat() {
+    }
+
+    static String legacyLine(String oldName, String newName) {
+        return HISTORY_PREFIX + oldName + HISTORY_SEPARATOR + newName;
+    }
+
+    static String structuredLine(Path oldPath, Path newPath) {
+        return STRUCTURED_HISTORY_PREFIX + oldPath.toAbsolutePath() + "\t" + newPath.toAbsolutePath();
+    }
+
+    static String abortedLine(Path oldPath, Path newPath) {
+        return ABORTED_HISTORY_PREFIX + oldPath.toAbsolutePath() + "\t" + newPath.toAbsolutePath();
+    }
+
+    static String revertedLine(Path oldPath, Path newPath) {
+        return REVERTED_HISTORY_PREFIX + oldPath.toAbsolutePath() + "\t" + newPath.toAbsolutePath();
+    }
+
+    static String sessionLine(long id, Instant startedAt, Path root) {
+        return SESSION_PREFIX + id + "\t" + startedAt + "\t" + root.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,208 @@
+package pl.syntaxerr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+final class HistoryJournal implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(HistoryJournal.class.getName());
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH = 512;
+    private static final long PERIODIC_FORCE_MILLIS = 1000;
+
+    enum Durability {
+        NONE,
+        PERIODIC,
+        GROUP_COMMIT;
+
+        static Durability parse(String value) {
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "none" -> NONE;
+                case "periodic" -> PERIODIC;
+                case "group-commit", "group" -> GROUP_COMMIT;
+                default -> throw new IllegalArgumentException("Nieznany tryb trwałości historii: " + value);
+            };
+        }
+    }
+
+    private record Pending(String lines, CompletableFuture<Void> written) {
+    }
+
+    private static final Pending CLOSE = new Pending("", new CompletableFuture<>());
+
+    private final FileChannel channel;
+    private final Durability durability;
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    HistoryJournal(Path historyFile, Durability durability) throws IOException {
+        this.channel = FileChannel.open(historyFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.durability = durability;
+        this.writer = new Thread(this::writeLoop, "tfnc-history-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    void recordRename(Path oldPath, Path newPath) throws IOException {
+        String lines = HistoryFormat.legacyLine(oldPath.getFileName().toString(), newPath.getFileName().toString())
+                + System.lineSeparator()
+                + HistoryFormat.structuredLine(oldPath, newPath)
+                + System.lineSeparator();
+        await(enqueue(lines));
+    }
+
+    void recordAborted(Path oldPath, Path newPath) throws IOException {
+        enqueue(HistoryFormat.abortedLine(oldPath, newPath) + System.lineSeparator());
+    }
+
+    void recordReverted(Path oldPath, Path newPath) throws IOException {
+        enqueue(HistoryFormat.revertedLine(oldPath, newPath) + System.lineSeparator());
+    }
+
+    void recordSessionStart(String sessionLine) throws IOException {
+        await(enqueue(sessionLine + System.lineSeparator()));
+    }
+
+    // Forces what has been written so far to disk (unless durability is NONE) and returns the history size it covers.
+    long force() throws IOException {
+        if (durability != Durability.NONE) {
+            channel.force(false);
+        }
+        return channel.size();
+    }
+
+    private CompletableFuture<Void> enqueue(String lines) throws IOException {
+        if (closed) {
+            throw new IOException("Dziennik historii jest zamknięty");
+        }
+        IOException currentFailure = failure;
+        if (currentFailure != null) {
+            throw currentFailure;
+        }
+
+        Pending pending = new Pending(lines, new CompletableFuture<>());
+        try {
+            queue.put(pending);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Przerwano zapis historii");
+        }
+        return pending.written;
+    }
+
+    private static void await(CompletableFuture<Void> written) throws IOException {
+        try {
+            written.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Przerwano oczekiwanie na zapis historii");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        long lastForce = System.nanoTime();
+        boolean dirty = false;
+        boolean closing = false;
+
+        while (!closing) {
+            try {
+                Pending first = queue.poll(PERIODIC_FORCE_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (InterruptedException ex) {
+                closing = true;
+            }
+
+            if (batch.remove(CLOSE)) {
+                closing = true;
+            }
+
+            try {
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                    dirty = true;
+                }
+
+                boolean forceNow = switch (durability) {
+                    case NONE -> false;
+                    case PERIODIC -> dirty && (closing || System.nanoTime() - lastForce >= TimeUnit.MILLISECONDS.toNanos(PERIODIC_FORCE_MILLIS));
+                    case GROUP_COMMIT -> dirty;
+                };
+                if (forceNow) {
+                    channel.force(false);
+                    lastForce = System.nanoTime();
+                    dirty = false;
+                }
+
+                batch.forEach(pending -> pending.written.complete(null));
+            } catch (IOException ex) {
+                failure = ex;
+                LOGGER.severe("Nie udało się zapisać historii zmian: " + ex.getMessage());
+                batch.forEach(pending -> pending.written.completeExceptionally(ex));
+            }
+            batch.clear();
+        }
+
+        IOException shutdownFailure = failure != null ? failure : new IOException("Dziennik historii jest zamknięty");
+        for (Pending pending; (pending = queue.poll()) != null; ) {
+            pending.written.completeExceptionally(shutdownFailure);
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (Pending pending : batch) {
+            text.append(pending.lines);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (durability != Durability.NONE && channel.isOpen()) {
+                channel.force(false);
+            }
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package pl.syntaxerr;
+
+import java.nio.file.Path;
+
+record HistorySelection(Long sessionId, boolean lastSession, Path prefix) {
+    static final HistorySelection ALL = new HistorySelection(null, false, null);
+
+    boolean selectsAll() {
+        return sessionId == null && !lastSession && prefix == null;
+    }
+
+    boolean matches(HistoryEntry entry) {
+        if (prefix == null) {
+            return true;
+        }
+        return entry.hasAbsolutePaths() && (entry.oldPath().startsWith(prefix) || entry.newPath().startsWith(prefix));
+    }
+}
@@ -0,0 +1,16 @@
+package pl.syntaxerr;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+record HistorySession(long id, Instant startedAt, Path root, long start, long end) {
+    static final long LEGACY_ID = 0;
+
+    boolean isLegacy() {
+        return id == LEGACY_ID;
+    }
+
+    boolean overlaps(Path prefix) {
+        return root != null && (root.startsWith(prefix) || prefix.startsWith(root));
+    }
+}
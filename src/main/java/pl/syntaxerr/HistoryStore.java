@@ -0,0 +1,712 @@
+package pl.syntaxerr;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class HistoryStore {
+    private static final int INDEX_MAGIC = 0x54464E48;
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER_BYTES = 8;
+    private static final int INDEX_RECORD_BYTES = 24;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int REVERSE_WINDOW_BYTES = 8 * 1024 * 1024;
+    private static final int MAX_PENDING_CANCELS = 65_536;
+
+    private record IndexRecord(long offset, long id, long startedAtMillis) {
+    }
+
+    interface LineConsumer {
+        void accept(long offset, String line) throws IOException;
+    }
+
+    interface ReverseLineConsumer {
+        boolean accept(long offset, String line) throws IOException;
+    }
+
+    interface EntryConsumer {
+        boolean accept(HistoryEntry entry) throws IOException;
+    }
+
+    private interface ScannedEntryConsumer {
+        boolean accept(long offset, HistoryEntry entry, boolean cancelled) throws IOException;
+    }
+
+    private record PathPair(Path oldPath, Path newPath) {
+    }
+
+    private record NamePair(String oldName, String newName) {
+    }
+
+    record CompactionResult(long bytesBefore, long bytesAfter, int entriesAfter, int sessionsAfter) {
+    }
+
+    private final Path historyFile;
+    private final Path indexFile;
+
+    HistoryStore(Path historyFile) {
+        this.historyFile = historyFile;
+        this.indexFile = historyFile.resolveSibling(historyFile.getFileName() + ".idx");
+    }
+
+    Path historyFile() {
+        return historyFile;
+    }
+
+    synchronized HistoryJournal openSession(Path root, HistoryJournal.Durability durability) throws IOException {
+        List<IndexRecord> records = loadIndex();
+        long id = records.isEmpty() ? 1 : records.getLast().id + 1;
+        Instant startedAt = Instant.now();
+        long offset = Files.exists(historyFile) ? Files.size(historyFile) : 0;
+
+        appendIndexRecord(new IndexRecord(offset, id, startedAt.toEpochMilli()));
+        HistoryJournal journal = new HistoryJournal(historyFile, durability);
+        try {
+            journal.recordSessionStart(HistoryFormat.sessionLine(id, startedAt, root));
+        } catch (IOException ex) {
+            journal.close();
+            throw ex;
+        }
+        return journal;
+    }
+
+    HistoryJournal openAppend(HistoryJournal.Durability durability) throws IOException {
+        return new HistoryJournal(historyFile, durability);
+    }
+
+    synchronized List<HistorySession> sessions() throws IOException {
+        if (!Files.exists(historyFile)) {
+            return List.of();
+        }
+
+        List<IndexRecord> records = loadIndex();
+        List<HistorySession> sessions = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long firstOffset = records.isEmpty() ? size : records.getFirst().offset;
+            if (firstOffset > 0) {
+                sessions.add(new HistorySession(HistorySession.LEGACY_ID, null, null, 0, firstOffset));
+            }
+            for (int i = 0; i < records.size(); i++) {
+                IndexRecord record = records.get(i);
+                long end = i + 1 < records.size() ? records.get(i + 1).offset : size;
+                String header = readLineAt(channel, record.offset, end);
+                sessions.add(new HistorySession(record.id, Instant.ofEpochMilli(record.startedAtMillis), sessionRoot(header), record.offset, end));
+            }
+        }
+        return sessions;
+    }
+
+    List<HistoryEntry> readEntries(HistorySelection selection) throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>();
+        forEachEntryReversed(selection, entry -> {
+            entries.add(entry);
+            return true;
+        });
+        Collections.reverse(entries);
+        return entries;
+    }
+
+    // Renames appended from the given offset on, without the ones cancelled by later markers.
+    List<HistoryEntry> readEntriesFrom(long offset) throws IOException {
+        if (!Files.exists(historyFile)) {
+            return List.of();
+        }
+        List<HistoryEntry> entries = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            scanEntriesReversed(channel, Math.min(offset, size), size, MAX_PENDING_CANCELS, (entryOffset, entry, cancelled) -> {
+                if (!cancelled && entry.hasAbsolutePaths()) {
+                    entries.add(entry);
+                }
+                return true;
+            });
+        }
+        Collections.reverse(entries);
+        return entries;
+    }
+
+    // Streams the selected entries newest first. Cancellation markers are always written after the entry they cancel,
+    // so scanning backwards only has to remember markers that are still waiting for their entry.
+    void forEachEntryReversed(HistorySelection selection, EntryConsumer consumer) throws IOException {
+        forEachEntryReversed(selection, consumer, MAX_PENDING_CANCELS);
+    }
+
+    void forEachEntryReversed(HistorySelection selection, EntryConsumer consumer, int maxPendingCancels) throws IOException {
+        if (!Files.exists(historyFile)) {
+            return;
+        }
+
+        List<HistorySession> selected = new ArrayList<>();
+        long size = Files.size(historyFile);
+        if (selection.selectsAll()) {
+            selected.add(new HistorySession(HistorySession.LEGACY_ID, null, null, 0, size));
+        } else {
+            List<HistorySession> sessions = sessions();
+            for (HistorySession session : sessions) {
+                boolean chosen = selection.sessionId() != null
+                        ? session.id() == selection.sessionId()
+                        : !selection.lastSession() || session == sessions.getLast();
+                if (chosen && (selection.prefix() == null || session.overlaps(selection.prefix()))) {
+                    selected.add(session);
+                }
+            }
+        }
+        if (selected.isEmpty()) {
+            return;
+        }
+
+        int[] session = {selected.size() - 1};
+        try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.READ)) {
+            scanEntriesReversed(channel, selected.getFirst().start(), size, maxPendingCancels, (offset, entry, cancelled) -> {
+                if (cancelled) {
+                    return true;
+                }
+                while (session[0] >= 0 && offset < selected.get(session[0]).start()) {
+                    session[0]--;
+                }
+                if (session[0] < 0) {
+                    return false;
+                }
+                if (offset >= selected.get(session[0]).end() || !selection.matches(entry)) {
+                    return true;
+                }
+                return consumer.accept(entry);
+            });
+        }
+    }
+
+    // Reports every rename between `from` and `to` newest first, each with its offset and whether a later marker
+    // cancelled it. Legacy twins of structured lines are not reported separately.
+    private static void scanEntriesReversed(FileChannel channel, long from, long to, int maxPendingCancels,
+                                            ScannedEntryConsumer consumer) throws IOException {
+        PendingCancels pending = new PendingCancels(maxPendingCancels);
+        HistoryEntry[] newerStructured = new HistoryEntry[1];
+        forEachLineReversed(channel, from, to, (offset, line) -> {
+            if (line.isBlank()) {
+                return true;
+            }
+            HistoryEntry twin = newerStructured[0];
+            newerStructured[0] = null;
+
+            PathPair cancel = parseCancel(line);
+            if (cancel != null) {
+                if (pending.isFull()) {
+                    resolveAhead(channel, from, offset, pending);
+                }
+                pending.add(cancel);
+                return true;
+            }
+
+            HistoryEntry entry = parseEntry(line);
+            if (entry == null || isLegacyTwin(entry, twin)) {
+                return true;
+            }
+            if (entry.hasAbsolutePaths()) {
+                newerStructured[0] = entry;
+            }
+            return consumer.accept(offset, entry, pending.cancels(offset, entry));
+        });
+    }
+
+    // Matches the pending cancellations against the entries before `to` without waiting for the main scan to get there,
+    // keeping only the offsets of the cancelled entries. The pending path pairs are released afterwards.
+    private static void resolveAhead(FileChannel channel, long from, long to, PendingCancels pending) throws IOException {
+        List<Long> cancelled = new ArrayList<>();
+        HistoryEntry[] newerStructured = new HistoryEntry[1];
+        forEachLineReversed(channel, from, to, (offset, line) -> {
+            if (line.isBlank()) {
+                return true;
+            }
+            HistoryEntry twin = newerStructured[0];
+            newerStructured[0] = null;
+            if (parseCancel(line) != null) {
+                return true;
+            }
+
+            HistoryEntry entry = parseEntry(line);
+            if (entry == null || isLegacyTwin(entry, twin)) {
+                return true;
+            }
+            if (entry.hasAbsolutePaths()) {
+                newerStructured[0] = entry;
+            }
+            if (!pending.isMarked(offset) && pending.consume(entry)) {
+                cancelled.add(offset);
+            }
+            return !pending.isEmpty();
+        });
+        pending.clear();
+        pending.mark(cancelled);
+    }
+
+    private static PathPair parseCancel(String line) {
+        if (!line.startsWith(HistoryFormat.ABORTED_HISTORY_PREFIX) && !line.startsWith(HistoryFormat.REVERTED_HISTORY_PREFIX)) {
+            return null;
+        }
+        String[] parts = line.substring(line.indexOf('\t') + 1).split("\t", 2);
+        return parts.length == 2 ? new PathPair(Path.of(parts[0]), Path.of(parts[1])) : null;
+    }
+
+    // Every rename record has a legacy twin: HistoryJournal.recordRename writes a legacy line followed by the structured
+    // one, so the reverse scan sees the structured line first.
+    private static boolean isLegacyTwin(HistoryEntry entry, HistoryEntry newerStructured) {
+        return !entry.hasAbsolutePaths() && newerStructured != null
+                && newerStructured.oldName().equals(entry.oldName()) && newerStructured.newName().equals(entry.newName());
+    }
+
+    // Cancellation lines (REVERTED/ABORTED) come after the entry they cancel, so a reverse scan holds them until it
+    // reaches that entry. Pairs are grouped by file names, which lets legacy name-only entries find a match directly.
+    // Once `limit` pairs are held, they are resolved ahead of the scan into a sorted array of cancelled-entry offsets,
+    // so memory stays at `limit` path pairs plus eight bytes per cancelled entry the scan has not reached yet.
+    private static final class PendingCancels {
+        private final int limit;
+        private final Map<NamePair, Map<PathPair, Integer>> byName = new HashMap<>();
+        private int size;
+        private long[] marked = new long[0];
+        private int markedEnd;
+
+        private PendingCancels(int limit) {
+            this.limit = limit;
+        }
+
+        boolean isFull() {
+            return size >= limit;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void add(PathPair pair) {
+            NamePair names = new NamePair(pair.oldPath().getFileName().toString(), pair.newPath().getFileName().toString());
+            byName.computeIfAbsent(names, key -> new HashMap<>()).merge(pair, 1, Integer::sum);
+            size++;
+        }
+
+        // The scan moves to lower offsets, so offsets above the current one can be dropped from the marked array.
+        boolean cancels(long offset, HistoryEntry entry) {
+            while (markedEnd > 0 && marked[markedEnd - 1] > offset) {
+                markedEnd--;
+            }
+            if (markedEnd > 0 && marked[markedEnd - 1] == offset) {
+                markedEnd--;
+                return true;
+            }
+            return consume(entry);
+        }
+
+        boolean isMarked(long offset) {
+            return Arrays.binarySearch(marked, 0, markedEnd, offset) >= 0;
+        }
+
+        boolean consume(HistoryEntry entry) {
+            NamePair names = new NamePair(entry.oldName(), entry.newName());
+            Map<PathPair, Integer> pairs = byName.get(names);
+            if (pairs == null) {
+                return false;
+            }
+            PathPair pair = entry.hasAbsolutePaths()
+                    ? new PathPair(entry.oldPath(), entry.newPath())
+                    : pairs.keySet().iterator().next();
+            Integer count = pairs.get(pair);
+            if (count == null) {
+                return false;
+            }
+            if (count == 1) {
+                pairs.remove(pair);
+                if (pairs.isEmpty()) {
+                    byName.remove(names);
+                }
+            } else {
+                pairs.put(pair, count - 1);
+            }
+            size--;
+            return true;
+        }
+
+        void clear() {
+            byName.clear();
+            size = 0;
+        }
+
+        // Both the remaining marked offsets and the new ones lie below the scan position.
+        void mark(List<Long> offsets) {
+            long[] merged = new long[markedEnd + offsets.size()];
+            System.arraycopy(marked, 0, merged, 0, markedEnd);
+            for (int i = 0; i < offsets.size(); i++) {
+                merged[markedEnd + i] = offsets.get(i);
+            }
+            Arrays.sort(merged);
+            marked = merged;
+            markedEnd = merged.length;
+        }
+    }
+
+    private static HistoryEntry parseEntry(String line) {
+        if (line.startsWith(HistoryFormat.STRUCTURED_HISTORY_PREFIX)) {
+            String[] parts = line.substring(HistoryFormat.STRUCTURED_HISTORY_PREFIX.length()).split("\t", 2);
+            if (parts.length != 2) {
+                return null;
+            }
+            Path oldPath = Path.of(parts[0]);
+            Path newPath = Path.of(parts[1]);
+            return new HistoryEntry(oldPath.getFileName().toString(), newPath.getFileName().toString(), oldPath, newPath);
+        }
+
+        if (!line.startsWith(HistoryFormat.HISTORY_PREFIX)) {
+            return null;
+        }
+        String payload = line.substring(HistoryFormat.HISTORY_PREFIX.length());
+        int separator = payload.lastIndexOf(HistoryFormat.HISTORY_SEPARATOR);
+        if (separator <= 0 || separator + HistoryFormat.HISTORY_SEPARATOR.length() >= payload.length()) {
+            return null;
+        }
+        return new HistoryEntry(payload.substring(0, separator), payload.substring(separator + HistoryFormat.HISTORY_SEPARATOR.length()), null, null);
+    }
+
+    synchronized CompactionResult compact() throws IOException {
+        return compact(MAX_PENDING_CANCELS);
+    }
+
+    // Two streaming passes, so memory does not grow with the history: a reverse scan collects the offsets of cancelled
+    // entries, then a forward pass copies everything else.
+    synchronized CompactionResult compact(int maxPendingCancels) throws IOException {
+        if (!Files.exists(historyFile)) {
+            return new CompactionResult(0, 0, 0, 0);
+        }
+
+        Path compacted = historyFile.resolveSibling(historyFile.getFileName() + ".compact");
+        long bytesBefore;
+        Compactor compactor;
+        try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.READ)) {
+            bytesBefore = channel.size();
+            OffsetList cancelled = new OffsetList();
+            scanEntriesReversed(channel, 0, bytesBefore, maxPendingCancels, (offset, entry, isCancelled) -> {
+                if (isCancelled) {
+                    cancelled.add(offset);
+                }
+                return true;
+            });
+
+            try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+                compactor = new Compactor(writer, cancelled);
+                forEachLine(channel, 0, bytesBefore, compactor);
+                compactor.finish();
+            }
+        }
+
+        Files.move(compacted, historyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        rebuildIndex();
+        return new CompactionResult(bytesBefore, Files.size(historyFile), compactor.entriesAfter, compactor.sessionsAfter);
+    }
+
+    // Offsets collected by the reverse scan, so they are in descending order; the forward pass consumes them from the end.
+    private static final class OffsetList {
+        private long[] offsets = new long[64];
+        private int size;
+
+        void add(long offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+
+        boolean removeIfNext(long offset) {
+            while (size > 0 && offsets[size - 1] < offset) {
+                size--;
+            }
+            if (size > 0 && offsets[size - 1] == offset) {
+                size--;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    // Copies the surviving renames, holding back each legacy line until the next line shows whether it is the twin of a
+    // structured one. A session header is written only once the session has a surviving entry.
+    private static final class Compactor implements LineConsumer {
+        private final BufferedWriter writer;
+        private final OffsetList cancelled;
+        private String pendingHeader;
+        private HistoryEntry heldLegacy;
+        private long heldOffset;
+        private int entriesAfter;
+        private int sessionsAfter;
+
+        private Compactor(BufferedWriter writer, OffsetList cancelled) {
+            this.writer = writer;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void accept(long offset, String line) throws IOException {
+            if (line.isBlank()) {
+                return;
+            }
+            HistoryEntry held = heldLegacy;
+            heldLegacy = null;
+            HistoryEntry entry = parseEntry(line);
+            if (held != null && !(entry != null && isLegacyTwin(held, entry))) {
+                copy(heldOffset, held);
+            }
+
+            if (line.startsWith(HistoryFormat.SESSION_PREFIX)) {
+                pendingHeader = line;
+            } else if (entry != null && entry.hasAbsolutePaths()) {
+                copy(offset, entry);
+            } else if (entry != null) {
+                heldLegacy = entry;
+                heldOffset = offset;
+            }
+        }
+
+        void finish() throws IOException {
+            if (heldLegacy != null) {
+                copy(heldOffset, heldLegacy);
+                heldLegacy = null;
+            }
+        }
+
+        private void copy(long offset, HistoryEntry entry) throws IOException {
+            if (cancelled.removeIfNext(offset)) {
+                return;
+            }
+            if (pendingHeader != null) {
+                writer.write(pendingHeader);
+                writer.newLine();
+                pendingHeader = null;
+                sessionsAfter++;
+            }
+            writer.write(HistoryFormat.legacyLine(entry.oldName(), entry.newName()));
+            writer.newLine();
+            if (entry.hasAbsolutePaths()) {
+                writer.write(HistoryFormat.structuredLine(entry.oldPath(), entry.newPath()));
+                writer.newLine();
+            }
+            entriesAfter++;
+        }
+    }
+
+    private static Path sessionRoot(String header) {
+        if (header == null || !header.startsWith(HistoryFormat.SESSION_PREFIX)) {
+            return null;
+        }
+        String[] parts = header.substring(HistoryFormat.SESSION_PREFIX.length()).split("\t", 3);
+        return parts.length == 3 ? Path.of(parts[2]) : null;
+    }
+
+    private static IndexRecord parseSessionLine(long offset, String line) {
+        String[] parts = line.substring(HistoryFormat.SESSION_PREFIX.length()).split("\t", 3);
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new IndexRecord(offset, Long.parseLong(parts[0]), Instant.parse(parts[1]).toEpochMilli());
+        } catch (NumberFormatException | DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    private List<IndexRecord> loadIndex() throws IOException {
+        List<IndexRecord> records = readIndex();
+        if (records == null || !lastRecordValid(records)) {
+            return rebuildIndex();
+        }
+        return records;
+    }
+
+    private List<IndexRecord> readIndex() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < INDEX_HEADER_BYTES || (size - INDEX_HEADER_BYTES) % INDEX_RECORD_BYTES != 0) {
+                return null;
+            }
+
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (index.getInt() != INDEX_MAGIC || index.getInt() != INDEX_VERSION) {
+                return null;
+            }
+
+            List<IndexRecord> records = new ArrayList<>((int) ((size - INDEX_HEADER_BYTES) / INDEX_RECORD_BYTES));
+            while (index.remaining() >= INDEX_RECORD_BYTES) {
+                records.add(new IndexRecord(index.getLong(), index.getLong(), index.getLong()));
+            }
+            return records;
+        }
+    }
+
+    private boolean lastRecordValid(List<IndexRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return true;
+        }
+        if (!Files.exists(historyFile)) {
+            return false;
+        }
+
+        IndexRecord last = records.getLast();
+        try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.READ)) {
+            if (last.offset >= channel.size()) {
+                return false;
+            }
+            String header = readLineAt(channel, last.offset, channel.size());
+            return header != null && header.startsWith(HistoryFormat.SESSION_PREFIX + last.id + "\t");
+        }
+    }
+
+    private List<IndexRecord> rebuildIndex() throws IOException {
+        List<IndexRecord> records = new ArrayList<>();
+        if (Files.exists(historyFile)) {
+            try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.READ)) {
+                forEachLine(channel, 0, channel.size(), (offset, line) -> {
+                    if (line.startsWith(HistoryFormat.SESSION_PREFIX)) {
+                        IndexRecord record = parseSessionLine(offset, line);
+                        if (record != null) {
+                            records.add(record);
+                        }
+                    }
+                });
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_BYTES + records.size() * INDEX_RECORD_BYTES);
+        buffer.putInt(INDEX_MAGIC).putInt(INDEX_VERSION);
+        for (IndexRecord record : records) {
+            putRecord(buffer, record);
+        }
+        buffer.flip();
+
+        Path rebuilt = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(rebuilt, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(rebuilt, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return records;
+    }
+
+    private void appendIndexRecord(IndexRecord record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_RECORD_BYTES);
+        putRecord(buffer, record);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static void putRecord(ByteBuffer buffer, IndexRecord record) {
+        buffer.putLong(record.offset).putLong(record.id).putLong(record.startedAtMillis);
+    }
+
+    private static String readLineAt(FileChannel channel, long offset, long end) throws IOException {
+        String[] first = new String[1];
+        long limit = Math.min(end, offset + READ_BUFFER_BYTES);
+        forEachLine(channel, offset, limit, (lineOffset, line) -> {
+            if (first[0] == null) {
+                first[0] = line;
+            }
+        });
+        return first[0];
+    }
+
+    static void forEachLine(FileChannel channel, long from, long to, LineConsumer consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long position = from;
+        long lineStart = from;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte value = buffer.get();
+                position++;
+                if (value == '\n') {
+                    consumer.accept(lineStart, decodeLine(line));
+                    line.reset();
+                    lineStart = position;
+                } else {
+                    line.write(value);
+                }
+            }
+        }
+        if (line.size() > 0) {
+            consumer.accept(lineStart, decodeLine(line));
+        }
+    }
+
+    static void forEachLineReversed(FileChannel channel, long from, long to, ReverseLineConsumer consumer) throws IOException {
+        long end = to;
+        int window = REVERSE_WINDOW_BYTES;
+        while (end > from) {
+            long start = Math.max(from, end - window);
+            int length = (int) (end - start);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            int lineEnd = length;
+            for (int position = length - 1; position >= 0; position--) {
+                if (buffer.get(position) == '\n') {
+                    if (position + 1 < lineEnd && !consumer.accept(start + position + 1, decodeLine(buffer, position + 1, lineEnd))) {
+                        return;
+                    }
+                    lineEnd = position;
+                }
+            }
+
+            if (start == from) {
+                if (lineEnd > 0) {
+                    consumer.accept(start, decodeLine(buffer, 0, lineEnd));
+                }
+                return;
+            }
+            if (lineEnd == length) {
+                window = Math.multiplyExact(window, 2);
+                continue;
+            }
+            end = start + lineEnd;
+            window = REVERSE_WINDOW_BYTES;
+        }
+    }
+
+    private static String decodeLine(MappedByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static String decodeLine(ByteArrayOutputStream line) {
+        String decoded = line.toString(StandardCharsets.UTF_8);
+        return decoded.endsWith("\r") ? decoded.substring(0, decoded.length() - 1) : decoded;
+    }
+}
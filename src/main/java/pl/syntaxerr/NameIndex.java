@@ -0,0 +1,152 @@
+package pl.syntaxerr;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+final class NameIndex {
+    private static final class Node {
+        private final Node parent;
+        private String name;
+
+        private Node(Node parent, String name) {
+            this.parent = parent;
+            this.name = name;
+        }
+    }
+
+    private final Path base;
+    private final Map<String, Object> byName = new HashMap<>();
+
+    private NameIndex(Path base) {
+        this.base = base;
+    }
+
+    static NameIndex empty() {
+        return new NameIndex(Path.of("").toAbsolutePath());
+    }
+
+    static NameIndex build(Path root, BiConsumer<Path, IOException> onFailure) throws IOException {
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        Path base = absoluteRoot.getParent() != null ? absoluteRoot.getParent() : absoluteRoot;
+        NameIndex index = new NameIndex(base);
+        Deque<Node> directories = new ArrayDeque<>();
+
+        Files.walkFileTree(absoluteRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                directories.push(index.add(directories.peek(), dir));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                index.add(directories.peek(), file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                onFailure.accept(file, exc);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                directories.pop();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return index;
+    }
+
+    private Node add(Node parent, Path path) {
+        Path fileName = path.getFileName();
+        Node node = new Node(parent, fileName == null ? "" : fileName.toString());
+        if (fileName != null) {
+            put(node);
+        }
+        return node;
+    }
+
+    List<Path> find(String name) {
+        List<Path> paths = new ArrayList<>();
+        for (Node node : nodes(name)) {
+            paths.add(pathOf(node));
+        }
+        return paths;
+    }
+
+    void renamed(Path current, String newName) {
+        Path fileName = current.toAbsolutePath().normalize().getFileName();
+        if (fileName == null) {
+            return;
+        }
+        Path absolute = current.toAbsolutePath().normalize();
+        for (Node node : nodes(fileName.toString())) {
+            if (pathOf(node).equals(absolute)) {
+                remove(node);
+                node.name = newName;
+                put(node);
+                return;
+            }
+        }
+    }
+
+    private Path pathOf(Node node) {
+        return node.parent == null
+                ? (node.name.isEmpty() ? base : base.resolve(node.name))
+                : pathOf(node.parent).resolve(node.name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Node> nodes(String name) {
+        Object value = byName.get(name);
+        if (value == null) {
+            return List.of();
+        }
+        if (value instanceof Node node) {
+            return List.of(node);
+        }
+        return (List<Node>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void put(Node node) {
+        Object existing = byName.get(node.name);
+        if (existing == null) {
+            byName.put(node.name, node);
+        } else if (existing instanceof Node single) {
+            List<Node> nodes = new ArrayList<>(2);
+            nodes.add(single);
+            nodes.add(node);
+            byName.put(node.name, nodes);
+        } else {
+            ((List<Node>) existing).add(node);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void remove(Node node) {
+        Object existing = byName.get(node.name);
+        if (existing == node) {
+            byName.remove(node.name);
+        } else if (existing instanceof List<?> list) {
+            List<Node> nodes = (List<Node>) list;
+            nodes.remove(node);
+            if (nodes.size() == 1) {
+                byName.put(node.name, nodes.getFirst());
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package pl.syntaxerr;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+final class ParallelTreeTraversal implements TreeTraversal {
+    private final int parallelism;
+
+    ParallelTreeTraversal(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    int parallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public void walk(Path start, Visitor visitor) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(start, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException ex) {
+            visitor.visitFailed(start, ex);
+            return;
+        }
+
+        if (!attrs.isDirectory()) {
+            visitor.visitFile(start, attrs);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new DirectoryTask(start, attrs, visitor));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class DirectoryTask extends RecursiveAction {
+        private final Path dir;
+        private final BasicFileAttributes attrs;
+        private final Visitor visitor;
+
+        private DirectoryTask(Path dir, BasicFileAttributes attrs, Visitor visitor) {
+            this.dir = dir;
+            this.attrs = attrs;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            if (!visitor.enterDirectory(dir, attrs)) {
+                return;
+            }
+
+            DirectoryStream<Path> entries;
+            try {
+                entries = Files.newDirectoryStream(dir);
+            } catch (IOException ex) {
+                visitor.visitFailed(dir, ex);
+                return;
+            }
+
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            IOException iterationFailure = null;
+            try (entries) {
+                for (Path entry : entries) {
+                    BasicFileAttributes entryAttrs;
+                    try {
+                        entryAttrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException ex) {
+                        visitor.visitFailed(entry, ex);
+                        continue;
+                    }
+
+                    if (entryAttrs.isDirectory()) {
+                        DirectoryTask task = new DirectoryTask(entry, entryAttrs, visitor);
+                        task.fork();
+                        subdirectories.add(task);
+                    } else {
+                        visitor.visitFile(entry, entryAttrs);
+                    }
+                }
+            } catch (DirectoryIteratorException ex) {
+                iterationFailure = ex.getCause();
+            } catch (IOException ex) {
+                iterationFailure = ex;
+            }
+
+            for (int i = subdirectories.size() - 1; i >= 0; i--) {
+                subdirectories.get(i).join();
+            }
+
+            if (iterationFailure != null) {
+                visitor.visitFailed(dir, iterationFailure);
+            } else {
+                visitor.leaveDirectory(dir);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package pl.syntaxerr;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Reads paths one at a time from a list such as the output of `find` or a torrent client hook. A NUL byte in the first
+// block switches to `find -print0` records (names may then contain newlines), otherwise there is one path per line.
+// Paths are not trimmed, because leading and trailing spaces are exactly what the renamer may have to clean.
+final class PathListReader implements Closeable {
+    private static final int UNKNOWN = -2;
+    private static final int DETECTION_BLOCK = 64 * 1024;
+
+    private final InputStream in;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    private int separator = UNKNOWN;
+
+    PathListReader(InputStream in) {
+        this.in = new BufferedInputStream(in);
+    }
+
+    static PathListReader open(String source, InputStream stdin) throws IOException {
+        return new PathListReader(BatchManifest.STDIN.equals(source) ? stdin : Files.newInputStream(Path.of(source)));
+    }
+
+    // Returns null at the end of the list; empty records are skipped.
+    Path next() throws IOException {
+        while (true) {
+            if (separator == UNKNOWN) {
+                separator = detectSeparator();
+            }
+            record.reset();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == separator) {
+                    break;
+                }
+                record.write(b);
+            }
+            String value = record.toString(StandardCharsets.UTF_8);
+            if (separator != 0 && value.endsWith("\r")) {
+                value = value.substring(0, value.length() - 1);
+            }
+            if (!value.isEmpty()) {
+                return Path.of(value).toAbsolutePath().normalize();
+            }
+            if (b == -1) {
+                return null;
+            }
+        }
+    }
+
+    private int detectSeparator() throws IOException {
+        in.mark(DETECTION_BLOCK);
+        try {
+            // A slow producer (a torrent client hook) must not be waited on once a complete line has arrived.
+            boolean line = false;
+            for (int i = 0; i < DETECTION_BLOCK && !(line && in.available() == 0); i++) {
+                int b = in.read();
+                if (b == 0) {
+                    return 0;
+                }
+                if (b == -1) {
+                    break;
+                }
+                line |= b == '\n';
+            }
+            return '\n';
+        } finally {
+            in.reset();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,26 @@
+package pl.syntaxerr;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+
+record RenamePlan(List<Operation> operations, List<Rejection> rejections) {
+    record Operation(Path source, String newName) {
+        Path target() {
+            return source.resolveSibling(newName);
+        }
+    }
+
+    record Rejection(Path source, String newName, String reason) {
+    }
+
+    void print(PrintStream out) {
+        for (Operation operation : operations) {
+            out.println("RENAME\t" + operation.source() + "\t" + operation.target());
+        }
+        for (Rejection rejection : rejections) {
+            out.println("SKIP\t" + rejection.source() + "\t" + rejection.reason());
+        }
+        out.flush();
+    }
+}
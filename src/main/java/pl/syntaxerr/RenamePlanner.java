@@ -0,0 +1,157 @@
+package pl.syntaxerr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+final class RenamePlanner {
+    private final UnaryOperator<String> cleaner;
+    private final TreeTraversal traversal;
+    private final BiConsumer<Path, IOException> onFailure;
+    private final WalkFilter filter;
+
+    private static final class DirectoryPlan {
+        private final Set<String> existingNames = new HashSet<>();
+        private final List<RenamePlan.Operation> candidates = new ArrayList<>();
+    }
+
+    RenamePlanner(ForbiddenWordsMatcher matcher, TreeTraversal traversal, BiConsumer<Path, IOException> onFailure) {
+        this(matcher::clean, traversal, onFailure);
+    }
+
+    RenamePlanner(UnaryOperator<String> cleaner, TreeTraversal traversal, BiConsumer<Path, IOException> onFailure) {
+        this(cleaner, traversal, onFailure, WalkFilter.NONE);
+    }
+
+    RenamePlanner(UnaryOperator<String> cleaner, TreeTraversal traversal, BiConsumer<Path, IOException> onFailure,
+                  WalkFilter filter) {
+        this.cleaner = cleaner;
+        this.traversal = traversal;
+        this.onFailure = onFailure;
+        this.filter = filter;
+    }
+
+    RenamePlan plan(Path start) throws IOException {
+        Map<Path, DirectoryPlan> directories = new ConcurrentHashMap<>();
+        List<RenamePlan.Operation> operations = Collections.synchronizedList(new ArrayList<>());
+        List<RenamePlan.Rejection> rejections = Collections.synchronizedList(new ArrayList<>());
+
+        traversal.walk(start, filter.wrap(start, new TreeTraversal.Visitor() {
+            @Override
+            public boolean enterDirectory(Path dir, BasicFileAttributes attrs) {
+                directories.put(dir, new DirectoryPlan());
+                return true;
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                addEntry(file, filter.renamesFiles());
+            }
+
+            @Override
+            public void leaveDirectory(Path dir) {
+                DirectoryPlan plan = directories.remove(dir);
+                if (plan != null) {
+                    resolve(plan, operations, rejections);
+                }
+                addEntry(dir, filter.renamesDirectories());
+            }
+
+            @Override
+            public void visitFailed(Path path, IOException exc) {
+                directories.remove(path);
+                DirectoryPlan parent = path.getParent() == null ? null : directories.get(path.getParent());
+                if (parent != null) {
+                    synchronized (parent) {
+                        parent.existingNames.add(path.getFileName().toString());
+                    }
+                }
+                onFailure.accept(path, exc);
+            }
+
+            // Skipped entries still occupy their names, so renames next to them are checked for collisions.
+            @Override
+            public void visitExcluded(Path path) {
+                addEntry(path, false);
+            }
+
+            private void addEntry(Path path, boolean renamed) {
+                if (path.getFileName() == null) {
+                    return;
+                }
+                String name = path.getFileName().toString();
+                String cleaned = renamed ? cleaner.apply(name) : name;
+                RenamePlan.Operation candidate = cleaned.equals(name) ? null : new RenamePlan.Operation(path, cleaned.trim());
+
+                DirectoryPlan parent = path.getParent() == null ? null : directories.get(path.getParent());
+                if (parent == null) {
+                    if (candidate != null) {
+                        resolveStandalone(candidate, operations, rejections);
+                    }
+                    return;
+                }
+                synchronized (parent) {
+                    parent.existingNames.add(name);
+                    if (candidate != null) {
+                        parent.candidates.add(candidate);
+                    }
+                }
+            }
+        }));
+
+        return new RenamePlan(List.copyOf(operations), List.copyOf(rejections));
+    }
+
+    private static void resolve(DirectoryPlan plan, List<RenamePlan.Operation> operations, List<RenamePlan.Rejection> rejections) {
+        Set<String> taken;
+        List<RenamePlan.Operation> candidates;
+        synchronized (plan) {
+            taken = new HashSet<>(plan.existingNames);
+            candidates = new ArrayList<>(plan.candidates);
+        }
+
+        for (RenamePlan.Operation candidate : candidates) {
+            String rejection = validate(candidate);
+            if (rejection == null && !taken.add(candidate.newName())) {
+                rejection = "docelowa nazwa już istnieje lub jest zajęta przez inną zmianę: " + candidate.newName();
+            }
+            if (rejection != null) {
+                rejections.add(new RenamePlan.Rejection(candidate.source(), candidate.newName(), rejection));
+            } else {
+                operations.add(candidate);
+            }
+        }
+    }
+
+    private static void resolveStandalone(RenamePlan.Operation candidate, List<RenamePlan.Operation> operations, List<RenamePlan.Rejection> rejections) {
+        String rejection = validate(candidate);
+        if (rejection == null && Files.exists(candidate.target())) {
+            rejection = "docelowa nazwa już istnieje: " + candidate.newName();
+        }
+        if (rejection != null) {
+            rejections.add(new RenamePlan.Rejection(candidate.source(), candidate.newName(), rejection));
+        } else {
+            operations.add(candidate);
+        }
+    }
+
+    private static String validate(RenamePlan.Operation candidate) {
+        if (candidate.newName().isBlank()) {
+            return "nowa nazwa byłaby pusta";
+        }
+        if (!Files.isWritable(candidate.source())) {
+            return "plik tylko do odczytu";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,220 @@
+package pl.syntaxerr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+// Periodic record of a rename walk: the finished subtrees whose parent is still in progress, plus the history size at
+// that moment. Renames hold the read lock and a checkpoint takes the write lock, so every rename journaled before the
+// saved offset has also been applied; only entries after the offset have to be checked again on --resume.
+final class RunCheckpoint {
+    private static final Logger LOGGER = Logger.getLogger(RunCheckpoint.class.getName());
+    private static final int MAGIC = 0x54464E43;
+    private static final int VERSION = 1;
+    static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(30);
+
+    private final Path file;
+    private final Path root;
+    private final String rulesetHash;
+    private final long intervalNanos;
+    private final Set<Path> finishedBefore;
+    private final long resumeOffset;
+    private final Map<Path, Set<Path>> finishedByParent = new HashMap<>();
+    private final Set<Path> alreadyRenamed = ConcurrentHashMap.newKeySet();
+    private final ReentrantReadWriteLock renames = new ReentrantReadWriteLock();
+    private final ReentrantLock saving = new ReentrantLock();
+    private volatile long lastSave = System.nanoTime();
+    private HistoryJournal journal;
+
+    private RunCheckpoint(Path file, Path root, String rulesetHash, Duration interval, Set<Path> finishedBefore, long resumeOffset) {
+        this.file = file;
+        this.root = root;
+        this.rulesetHash = rulesetHash;
+        this.intervalNanos = interval.toNanos();
+        this.finishedBefore = finishedBefore;
+        this.resumeOffset = resumeOffset;
+    }
+
+    // One file per walk root, so concurrent runs from the same working directory keep their own checkpoints.
+    static Path fileFor(Path directory, Path root) {
+        String hash = DirectoryStateCache.rulesetHash(List.of(key(root).toString()));
+        return directory.resolve("tfnc-" + hash.substring(0, 16) + ".checkpoint");
+    }
+
+    static RunCheckpoint start(Path file, Path root, String rulesetHash, Duration interval) {
+        return new RunCheckpoint(file, key(root), rulesetHash, interval, ConcurrentHashMap.newKeySet(), -1);
+    }
+
+    static RunCheckpoint resume(Path file, Path root, String rulesetHash, Duration interval) {
+        Path rootKey = key(root);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.warning("Nieznany format punktu kontrolnego, pełny przebieg: " + file);
+                return start(file, root, rulesetHash, interval);
+            }
+            Path savedRoot = Path.of(in.readUTF());
+            if (!savedRoot.equals(rootKey) || !in.readUTF().equals(rulesetHash)) {
+                LOGGER.warning("Punkt kontrolny dotyczy innego katalogu lub innej listy zakazanych słów, pełny przebieg.");
+                return start(file, root, rulesetHash, interval);
+            }
+            long offset = in.readLong();
+            int count = in.readInt();
+            Set<Path> finished = ConcurrentHashMap.newKeySet();
+            for (int i = 0; i < count; i++) {
+                finished.add(Path.of(in.readUTF()));
+            }
+            LOGGER.info("Wznawianie przebiegu: pominięte zakończone poddrzewa=" + finished.size() + ".");
+            return new RunCheckpoint(file, rootKey, rulesetHash, interval, finished, offset);
+        } catch (NoSuchFileException ex) {
+            LOGGER.info("Brak punktu kontrolnego do wznowienia, pełny przebieg.");
+        } catch (IOException ex) {
+            LOGGER.warning("Nie udało się odczytać punktu kontrolnego, pełny przebieg: " + ex.getMessage());
+        }
+        return start(file, root, rulesetHash, interval);
+    }
+
+    // Renames journaled after the checkpoint either happened (the target exists, so the walk must not clean it again)
+    // or were cut off before the move, in which case the entry is marked as aborted in the new session.
+    void begin(HistoryStore history, HistoryJournal journal) throws IOException {
+        this.journal = journal;
+        if (resumeOffset < 0) {
+            return;
+        }
+
+        // Newest first: the map then holds the final location of every path renamed later, so each entry is rebased
+        // through its nearest renamed ancestor in one lookup per path level.
+        List<HistoryEntry> entries = history.readEntriesFrom(resumeOffset);
+        Map<Path, Path> moved = new HashMap<>();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            HistoryEntry entry = entries.get(i);
+            Path oldPath = rebase(moved, key(entry.oldPath()));
+            Path newPath = rebase(moved, key(entry.newPath()));
+            if (Files.exists(oldPath) && !Files.exists(newPath)) {
+                journal.recordAborted(entry.oldPath(), entry.newPath());
+                continue;
+            }
+            moved.put(key(entry.oldPath()), newPath);
+            alreadyRenamed.add(newPath);
+        }
+        if (!entries.isEmpty()) {
+            LOGGER.info("Wznawianie przebiegu: zmiany zapisane po punkcie kontrolnym=" + entries.size() + ".");
+        }
+    }
+
+    private static Path rebase(Map<Path, Path> moved, Path path) {
+        for (Path ancestor = path.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            Path target = moved.get(ancestor);
+            if (target != null) {
+                return target.resolve(ancestor.relativize(path));
+            }
+        }
+        return path;
+    }
+
+    boolean skipSubtree(Path dir) {
+        Path key = key(dir);
+        if (!finishedBefore.remove(key)) {
+            return false;
+        }
+        finished(key, key);
+        return true;
+    }
+
+    boolean alreadyRenamed(Path path) {
+        return !alreadyRenamed.isEmpty() && alreadyRenamed.remove(key(path));
+    }
+
+    Path renaming(Supplier<Path> rename) {
+        renames.readLock().lock();
+        try {
+            return rename.get();
+        } finally {
+            renames.readLock().unlock();
+        }
+    }
+
+    void finished(Path dir, Path result) {
+        Path key = key(dir);
+        synchronized (finishedByParent) {
+            finishedByParent.remove(key);
+            if (key.getParent() != null && !key.equals(root)) {
+                finishedByParent.computeIfAbsent(key.getParent(), parent -> new HashSet<>()).add(key(result));
+            }
+        }
+        if (System.nanoTime() - lastSave >= intervalNanos) {
+            save();
+        }
+    }
+
+    void save() {
+        if (journal == null || !saving.tryLock()) {
+            return;
+        }
+        try {
+            long offset;
+            List<Path> finished = new ArrayList<>();
+            renames.writeLock().lock();
+            try {
+                offset = journal.force();
+                synchronized (finishedByParent) {
+                    finishedByParent.values().forEach(finished::addAll);
+                }
+            } finally {
+                renames.writeLock().unlock();
+            }
+            finished.addAll(finishedBefore);
+            write(offset, finished);
+            lastSave = System.nanoTime();
+        } catch (IOException ex) {
+            LOGGER.warning("Nie udało się zapisać punktu kontrolnego: " + ex.getMessage());
+        } finally {
+            saving.unlock();
+        }
+    }
+
+    void complete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            LOGGER.warning("Nie udało się usunąć punktu kontrolnego: " + ex.getMessage());
+        }
+    }
+
+    private void write(long offset, List<Path> finished) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(root.toString());
+            out.writeUTF(rulesetHash);
+            out.writeLong(offset);
+            out.writeInt(finished.size());
+            for (Path path : finished) {
+                out.writeUTF(path.toString());
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
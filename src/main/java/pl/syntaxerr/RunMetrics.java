@@ -0,0 +1,307 @@
+package pl.syntaxerr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+final class RunMetrics {
+
+    enum Counter {
+        VISITED, MATCHED, RENAMED, SKIPPED, ERRORED, NAME_CACHE_HIT, NAME_CACHE_MISS
+    }
+
+    interface IoAction {
+        void run() throws IOException;
+    }
+
+    @Name("pl.syntaxerr.FileMove")
+    @Label("File Move")
+    @Category("TFNC")
+    static final class FileMoveEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Target")
+        String target;
+    }
+
+    @Name("pl.syntaxerr.HistoryAppend")
+    @Label("History Append")
+    @Category("TFNC")
+    static final class HistoryAppendEvent extends Event {
+    }
+
+    @Name("pl.syntaxerr.RunPhase")
+    @Label("Run Phase")
+    @Category("TFNC")
+    static final class PhaseEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("pl.syntaxerr.RunSummary")
+    @Label("Run Summary")
+    @Category("TFNC")
+    static final class SummaryEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Visited")
+        long visited;
+        @Label("Matched")
+        long matched;
+        @Label("Renamed")
+        long renamed;
+        @Label("Skipped")
+        long skipped;
+        @Label("Errored")
+        long errored;
+        @Label("Name Cache Hits")
+        long nameCacheHits;
+        @Label("Name Cache Misses")
+        long nameCacheMisses;
+    }
+
+    final class Phase implements AutoCloseable {
+        private final String name;
+        private final long startedNanos = System.nanoTime();
+        private final PhaseEvent event = new PhaseEvent();
+
+        private Phase(String name) {
+            this.name = name;
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            event.end();
+            synchronized (phases) {
+                phases.merge(name, System.nanoTime() - startedNanos, Long::sum);
+            }
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.phase = name;
+                event.commit();
+            }
+        }
+    }
+
+    static final class LatencyHistogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            long value = Math.max(nanos, 1);
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long percentileNanos(double percentile) {
+            long total = count();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int bucket = 0; bucket < buckets.length(); bucket++) {
+                seen += buckets.get(bucket);
+                if (seen >= rank) {
+                    return Math.min(bucket == 62 ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1, maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+
+        private String toJson() {
+            long total = count();
+            StringBuilder json = new StringBuilder()
+                    .append("{\"count\":").append(total)
+                    .append(",\"meanMicros\":").append(micros(total == 0 ? 0 : totalNanos.sum() / total))
+                    .append(",\"p50Micros\":").append(micros(percentileNanos(0.50)))
+                    .append(",\"p90Micros\":").append(micros(percentileNanos(0.90)))
+                    .append(",\"p99Micros\":").append(micros(percentileNanos(0.99)))
+                    .append(",\"maxMicros\":").append(micros(maxNanos.get()))
+                    .append(",\"log2Buckets\":{");
+            boolean first = true;
+            for (int bucket = 0; bucket < buckets.length(); bucket++) {
+                long value = buckets.get(bucket);
+                if (value > 0) {
+                    json.append(first ? "" : ",").append("\"").append(bucket).append("\":").append(value);
+                    first = false;
+                }
+            }
+            return json.append("}}").toString();
+        }
+    }
+
+    private final String operation;
+    private final RunMetrics parent;
+    private final long startedNanos = System.nanoTime();
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+    private final LatencyHistogram journalLatency = new LatencyHistogram();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    RunMetrics(String operation) {
+        this(operation, null);
+    }
+
+    RunMetrics(String operation, RunMetrics parent) {
+        this.operation = operation;
+        this.parent = parent;
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+        if (parent != null) {
+            parent.increment(counter);
+        }
+    }
+
+    void add(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+        if (parent != null) {
+            parent.add(counter, amount);
+        }
+    }
+
+    long count(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    Phase phase(String name) {
+        return new Phase(name);
+    }
+
+    void timeMove(Path source, Path target, IoAction move) throws IOException {
+        FileMoveEvent event = new FileMoveEvent();
+        event.begin();
+        long started = System.nanoTime();
+        try {
+            move.run();
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            moveLatency.record(elapsed);
+            if (parent != null) {
+                parent.moveLatency.record(elapsed);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.source = source.toString();
+                event.target = target.toString();
+                event.commit();
+            }
+        }
+    }
+
+    void timeJournal(IoAction append) throws IOException {
+        HistoryAppendEvent event = new HistoryAppendEvent();
+        event.begin();
+        long started = System.nanoTime();
+        try {
+            append.run();
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            journalLatency.record(elapsed);
+            if (parent != null) {
+                parent.journalLatency.record(elapsed);
+            }
+            event.commit();
+        }
+    }
+
+    long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    }
+
+    LatencyHistogram moveLatency() {
+        return moveLatency;
+    }
+
+    LatencyHistogram journalLatency() {
+        return journalLatency;
+    }
+
+    void finish() {
+        SummaryEvent event = new SummaryEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.visited = count(Counter.VISITED);
+            event.matched = count(Counter.MATCHED);
+            event.renamed = count(Counter.RENAMED);
+            event.skipped = count(Counter.SKIPPED);
+            event.errored = count(Counter.ERRORED);
+            event.nameCacheHits = count(Counter.NAME_CACHE_HIT);
+            event.nameCacheMisses = count(Counter.NAME_CACHE_MISS);
+            event.commit();
+        }
+    }
+
+    String summary() {
+        StringBuilder summary = new StringBuilder("Statystyki (").append(operation).append("): ");
+        for (Counter counter : Counter.values()) {
+            summary.append(counter.name().toLowerCase(Locale.ROOT)).append('=').append(count(counter)).append(", ");
+        }
+        summary.append("czas=").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos)).append(" ms");
+        synchronized (phases) {
+            phases.forEach((name, nanos) -> summary.append(", ").append(name).append('=').append(TimeUnit.NANOSECONDS.toMillis(nanos)).append(" ms"));
+        }
+        summary.append(", move p99=").append(micros(moveLatency.percentileNanos(0.99))).append(" µs")
+                .append(", historia p99=").append(micros(journalLatency.percentileNanos(0.99))).append(" µs");
+        return summary.toString();
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder("{\"operation\":\"").append(operation).append("\"")
+                .append(",\"wallMillis\":").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos))
+                .append(",\"counters\":{");
+        for (Counter counter : Counter.values()) {
+            json.append(counter.ordinal() == 0 ? "" : ",")
+                    .append("\"").append(counter.name().toLowerCase(Locale.ROOT)).append("\":").append(count(counter));
+        }
+        json.append("},\"phasesMillis\":{");
+        synchronized (phases) {
+            boolean first = true;
+            for (Map.Entry<String, Long> phase : phases.entrySet()) {
+                json.append(first ? "" : ",").append("\"").append(phase.getKey()).append("\":")
+                        .append(TimeUnit.NANOSECONDS.toMillis(phase.getValue()));
+                first = false;
+            }
+        }
+        return json.append("},\"moveLatency\":").append(moveLatency.toJson())
+                .append(",\"historyAppendLatency\":").append(journalLatency.toJson())
+                .append("}").toString();
+    }
+
+    void writeJson(Path file) throws IOException {
+        Files.writeString(file, toJson() + System.lineSeparator(), StandardCharsets.UTF_8);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000.0);
+    }
+}
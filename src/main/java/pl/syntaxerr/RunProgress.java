@@ -0,0 +1,84 @@
+package pl.syntaxerr;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+final class RunProgress {
+    private final LongAdder done = new LongAdder();
+    private volatile long total = -1;
+    private volatile long startedNanos = System.nanoTime();
+    private volatile boolean running;
+    private volatile boolean cancelled;
+    private volatile String status = "";
+
+    void reset() {
+        total = -1;
+        cancelled = false;
+        done.reset();
+    }
+
+    void begin() {
+        done.reset();
+        startedNanos = System.nanoTime();
+        running = true;
+    }
+
+    void finish() {
+        running = false;
+    }
+
+    void setTotal(long total) {
+        this.total = total;
+    }
+
+    void advance() {
+        done.increment();
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    void setStatus(String status) {
+        this.status = status;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    String status() {
+        return status;
+    }
+
+    long total() {
+        return total;
+    }
+
+    long done() {
+        return done.sum();
+    }
+
+    int permille() {
+        long expected = total;
+        if (expected <= 0) {
+            return 0;
+        }
+        return (int) Math.min(1000, done() * 1000 / expected);
+    }
+
+    Duration eta() {
+        long expected = total;
+        long completed = done();
+        if (expected <= 0 || completed == 0) {
+            return null;
+        }
+        long elapsed = System.nanoTime() - startedNanos;
+        long remaining = Math.max(0, expected - completed);
+        return Duration.ofNanos((long) ((double) elapsed / completed * remaining));
+    }
+}
@@ -0,0 +1,43 @@
+package pl.syntaxerr;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+final class SequentialTreeTraversal implements TreeTraversal {
+
+    @Override
+    public void walk(Path start, Visitor visitor) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return visitor.enterDirectory(dir, attrs) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                visitor.visitFile(file, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                visitor.visitFailed(file, exc);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                if (exc != null) {
+                    visitor.visitFailed(dir, exc);
+                } else {
+                    visitor.leaveDirectory(dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
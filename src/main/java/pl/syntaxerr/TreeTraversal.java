@@ -0,0 +1,24 @@
+package pl.syntaxerr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+interface TreeTraversal {
+    void walk(Path start, Visitor visitor) throws IOException;
+
+    interface Visitor {
+        default boolean enterDirectory(Path dir, BasicFileAttributes attrs) {
+            return true;
+        }
+
+        void visitFile(Path file, BasicFileAttributes attrs);
+
+        void leaveDirectory(Path dir);
+
+        void visitFailed(Path path, IOException exc);
+
+        default void visitExcluded(Path path) {
+        }
+    }
+}
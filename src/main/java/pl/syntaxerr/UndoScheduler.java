@@ -0,0 +1,172 @@
+package pl.syntaxerr;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// Reverts history entries (newest first) with a worker pool while keeping dependent entries in order. Two entries depend
+// on each other when a path of one equals, contains or lies inside a path of the other, e.g. the a->b, b->c chain or a
+// directory and the files renamed inside it. Entries are taken in bounded batches, so memory does not grow with history.
+final class UndoScheduler implements AutoCloseable {
+    static final int DEFAULT_BATCH_SIZE = 4_096;
+
+    private final int parallelism;
+    private final int batchSize;
+    private final Consumer<HistoryEntry> reverter;
+    private final BooleanSupplier cancelled;
+    private final List<HistoryEntry> batch = new ArrayList<>();
+    private ExecutorService workers;
+
+    UndoScheduler(int parallelism, int batchSize, Consumer<HistoryEntry> reverter, BooleanSupplier cancelled) {
+        if (parallelism < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Parallelism and batch size must be at least 1: " + parallelism + ", " + batchSize);
+        }
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.reverter = reverter;
+        this.cancelled = cancelled;
+    }
+
+    // Entries without absolute paths are resolved through the shared name index, so they run alone.
+    void submit(HistoryEntry entry) throws IOException {
+        if (!entry.hasAbsolutePaths() || parallelism == 1) {
+            flush();
+            revert(entry);
+            return;
+        }
+
+        batch.add(entry);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<HistoryEntry> entries = List.copyOf(batch);
+        batch.clear();
+        List<List<Integer>> dependents = dependents(entries);
+        AtomicInteger[] waiting = new AtomicInteger[entries.size()];
+        for (int i = 0; i < waiting.length; i++) {
+            waiting[i] = new AtomicInteger();
+        }
+        for (List<Integer> next : dependents) {
+            for (int dependent : next) {
+                waiting[dependent].incrementAndGet();
+            }
+        }
+
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "tfnc-undo-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        // The ready set is taken before anything runs; once workers start, they start the dependents they release, so
+        // checking the counters while starting would start those entries twice.
+        List<Integer> ready = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (waiting[i].get() == 0) {
+                ready.add(i);
+            }
+        }
+        CountDownLatch done = new CountDownLatch(entries.size());
+        for (int index : ready) {
+            start(index, entries, dependents, waiting, done);
+        }
+        try {
+            done.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Przerwano cofanie zmian");
+        }
+    }
+
+    private void start(int index, List<HistoryEntry> entries, List<List<Integer>> dependents, AtomicInteger[] waiting,
+                       CountDownLatch done) {
+        workers.execute(() -> {
+            try {
+                revert(entries.get(index));
+            } finally {
+                for (int dependent : dependents.get(index)) {
+                    if (waiting[dependent].decrementAndGet() == 0) {
+                        start(dependent, entries, dependents, waiting, done);
+                    }
+                }
+                done.countDown();
+            }
+        });
+    }
+
+    private void revert(HistoryEntry entry) {
+        if (!cancelled.getAsBoolean()) {
+            reverter.accept(entry);
+        }
+    }
+
+    // Edges always point from an entry to a later one, so the graph is acyclic. Only the latest entry that touched a
+    // path exactly is remembered; entries below a path are dropped once something touches the path itself, because
+    // anything later that conflicts with them also conflicts with that entry.
+    static List<List<Integer>> dependents(List<HistoryEntry> entries) {
+        List<List<Integer>> dependents = new ArrayList<>(entries.size());
+        Map<Path, Integer> lastAt = new HashMap<>();
+        Map<Path, List<Integer>> below = new HashMap<>();
+        for (int index = 0; index < entries.size(); index++) {
+            dependents.add(new ArrayList<>());
+            HistoryEntry entry = entries.get(index);
+            List<Path> paths = List.of(entry.newPath().normalize(), entry.oldPath().normalize());
+
+            Set<Integer> dependencies = new LinkedHashSet<>();
+            for (Path path : paths) {
+                Integer previous = lastAt.get(path);
+                if (previous != null) {
+                    dependencies.add(previous);
+                }
+                List<Integer> inside = below.remove(path);
+                if (inside != null) {
+                    dependencies.addAll(inside);
+                }
+                for (Path ancestor = path.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+                    previous = lastAt.get(ancestor);
+                    if (previous != null) {
+                        dependencies.add(previous);
+                    }
+                }
+            }
+            for (int dependency : dependencies) {
+                dependents.get(dependency).add(index);
+            }
+
+            for (Path path : paths) {
+                lastAt.put(path, index);
+                for (Path ancestor = path.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+                    below.computeIfAbsent(ancestor, key -> new ArrayList<>()).add(index);
+                }
+            }
+        }
+        return dependents;
+    }
+
+    @Override
+    public void close() {
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package pl.syntaxerr;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+// Limits which part of a tree a walk touches. Excluded directories and directories at the depth limit are cut off in
+// enterDirectory, so the traversal never lists them. Globs without a slash match the entry name, the others match the
+// path relative to the walk root. Include globs only select files; directories are always descended into.
+final class WalkFilter {
+    private static final Logger LOGGER = Logger.getLogger(WalkFilter.class.getName());
+    static final String INCLUDE_KEY = "include";
+    static final String EXCLUDE_KEY = "exclude";
+    static final String MAX_DEPTH_KEY = "max-depth";
+    static final String TYPE_KEY = "type";
+    static final WalkFilter NONE = new WalkFilter(List.of(), List.of(), Integer.MAX_VALUE, EntryType.ALL);
+
+    enum EntryType {
+        ALL,
+        FILES,
+        DIRECTORIES;
+
+        static EntryType parse(String value) {
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "all" -> ALL;
+                case "files" -> FILES;
+                case "dirs", "directories" -> DIRECTORIES;
+                default -> throw new IllegalArgumentException("Nieznany typ wpisów: " + value + " (dostępne: all, files, dirs)");
+            };
+        }
+    }
+
+    private record Glob(String pattern, PathMatcher matcher, boolean relative) {
+        static Glob compile(String pattern) {
+            return new Glob(pattern, FileSystems.getDefault().getPathMatcher("glob:" + pattern), pattern.indexOf('/') >= 0);
+        }
+
+        boolean matches(Path start, Path path) {
+            return matcher.matches(relative ? start.relativize(path) : path.getFileName());
+        }
+    }
+
+    private final List<Glob> includes;
+    private final List<Glob> excludes;
+    private final int maxDepth;
+    private final EntryType type;
+
+    private WalkFilter(List<Glob> includes, List<Glob> excludes, int maxDepth, EntryType type) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.maxDepth = maxDepth;
+        this.type = type;
+    }
+
+    // One "key=value" rule per line; blank lines and lines starting with '#' are ignored.
+    static WalkFilter load(Path file) {
+        try {
+            return parse(Files.readAllLines(file));
+        } catch (NoSuchFileException ex) {
+            return NONE;
+        } catch (IOException | IllegalArgumentException ex) {
+            LOGGER.severe("Nie udało się odczytać " + file + ", filtry nie będą użyte: " + ex.getMessage());
+            return NONE;
+        }
+    }
+
+    static WalkFilter parse(List<String> lines) {
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        Integer maxDepth = null;
+        EntryType type = null;
+        for (String raw : lines) {
+            String line = raw.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int separator = line.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Niepoprawna reguła filtra: " + line);
+            }
+            String key = line.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(separator + 1).trim();
+            switch (key) {
+                case INCLUDE_KEY -> includes.add(value);
+                case EXCLUDE_KEY -> excludes.add(value);
+                case MAX_DEPTH_KEY -> maxDepth = parseDepth(value);
+                case TYPE_KEY -> type = EntryType.parse(value);
+                default -> throw new IllegalArgumentException("Nieznana reguła filtra: " + key);
+            }
+        }
+        return NONE.withOverrides(includes, excludes, maxDepth, type);
+    }
+
+    static int parseDepth(String value) {
+        try {
+            int depth = Integer.parseInt(value.trim());
+            if (depth >= 0) {
+                return depth;
+            }
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Głębokość musi być liczbą nieujemną: " + value);
+    }
+
+    // Globs from the command line are added to the file's rules; depth and entry type replace them when given.
+    WalkFilter withOverrides(List<String> extraIncludes, List<String> extraExcludes, Integer maxDepth, EntryType type) {
+        List<Glob> mergedIncludes = new ArrayList<>(includes);
+        extraIncludes.forEach(pattern -> mergedIncludes.add(Glob.compile(pattern)));
+        List<Glob> mergedExcludes = new ArrayList<>(excludes);
+        extraExcludes.forEach(pattern -> mergedExcludes.add(Glob.compile(pattern)));
+        return new WalkFilter(List.copyOf(mergedIncludes), List.copyOf(mergedExcludes),
+                maxDepth != null ? maxDepth : this.maxDepth, type != null ? type : this.type);
+    }
+
+    boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty() && maxDepth == Integer.MAX_VALUE && type == EntryType.ALL;
+    }
+
+    // The rules in file syntax; part of the incremental cache key, since a directory skipped as unchanged under one filter
+    // may still hold entries that another filter would have renamed.
+    List<String> rules() {
+        List<String> rules = new ArrayList<>();
+        includes.forEach(glob -> rules.add(INCLUDE_KEY + "=" + glob.pattern()));
+        excludes.forEach(glob -> rules.add(EXCLUDE_KEY + "=" + glob.pattern()));
+        rules.add(MAX_DEPTH_KEY + "=" + maxDepth);
+        rules.add(TYPE_KEY + "=" + type.name().toLowerCase(Locale.ROOT));
+        return rules;
+    }
+
+    boolean renamesFiles() {
+        return type != EntryType.DIRECTORIES;
+    }
+
+    boolean renamesDirectories() {
+        return type != EntryType.FILES;
+    }
+
+    boolean excludes(Path start, Path path, boolean directory) {
+        if (path.equals(start)) {
+            return false;
+        }
+        if (path.getNameCount() - start.getNameCount() > maxDepth) {
+            return true;
+        }
+        for (Glob glob : excludes) {
+            if (glob.matches(start, path)) {
+                return true;
+            }
+        }
+        if (directory || includes.isEmpty()) {
+            return false;
+        }
+        for (Glob glob : includes) {
+            if (glob.matches(start, path)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Listed paths (--paths-from) have no walk root, so only name globs can be checked against their ancestors; a walk
+    // would never have entered a directory such as @eaDir in the first place.
+    boolean excludesAncestorOf(Path path) {
+        for (Path ancestor = path.getParent(); ancestor != null && ancestor.getFileName() != null; ancestor = ancestor.getParent()) {
+            for (Glob glob : excludes) {
+                if (!glob.relative() && glob.matcher().matches(ancestor.getFileName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    TreeTraversal.Visitor wrap(Path start, TreeTraversal.Visitor delegate) {
+        if (isEmpty()) {
+            return delegate;
+        }
+        return new TreeTraversal.Visitor() {
+            @Override
+            public boolean enterDirectory(Path dir, BasicFileAttributes attrs) {
+                if (excludes(start, dir, true)) {
+                    delegate.visitExcluded(dir);
+                    return false;
+                }
+                if (dir.getNameCount() - start.getNameCount() >= maxDepth) {
+                    delegate.leaveDirectory(dir);
+                    return false;
+                }
+                return delegate.enterDirectory(dir, attrs);
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                if (excludes(start, file, false)) {
+                    delegate.visitExcluded(file);
+                } else {
+                    delegate.visitFile(file, attrs);
+                }
+            }
+
+            @Override
+            public void leaveDirectory(Path dir) {
+                delegate.leaveDirectory(dir);
+            }
+
+            @Override
+            public void visitFailed(Path path, IOException exc) {
+                delegate.visitFailed(path, exc);
+            }
+
+            @Override
+            public void visitExcluded(Path path) {
+                delegate.visitExcluded(path);
+            }
+        };
+    }
+}
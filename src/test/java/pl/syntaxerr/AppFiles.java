@@ -0,0 +1,26 @@
+package pl.syntaxerr;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// The renamer keeps its working files in the current directory; tests that create one remove them afterwards.
+final class AppFiles {
+
+    private AppFiles() {
+    }
+
+    static void cleanupAppFiles() throws IOException {
+        Files.deleteIfExists(Path.of("history.txt"));
+        Files.deleteIfExists(Path.of("history.txt.idx"));
+        Files.deleteIfExists(Path.of("blacklist.txt"));
+        Files.deleteIfExists(Path.of("error.txt"));
+        Files.deleteIfExists(Path.of("dirstate.cache"));
+        try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(Path.of(""), "tfnc-*.checkpoint")) {
+            for (Path checkpoint : checkpoints) {
+                Files.deleteIfExists(checkpoint);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchManifestTest {
+
+    @Test
+    void parse_dropsDuplicatesAndRootsNestedInOtherListedRoots() {
+        Path library = Path.of("library").toAbsolutePath();
+        String manifest = String.join("\n",
+                library.resolve("shows").resolve("Show").toString(),
+                "# comment",
+                library.resolve("shows").toString(),
+                library.resolve("shows-old").toString(),
+                library.resolve("shows").resolve(".").toString(),
+                library.resolve("movies").resolve("Movie").resolve("Extras").toString(),
+                library.resolve("movies").resolve("Movie").toString());
+
+        assertEquals(List.of(library.resolve("shows"), library.resolve("shows-old"), library.resolve("movies").resolve("Movie")),
+                BatchManifest.parse(manifest));
+    }
+}
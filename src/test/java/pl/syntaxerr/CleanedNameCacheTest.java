@@ -0,0 +1,37 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CleanedNameCacheTest {
+
+    @Test
+    void clean_countsHitsAndEvictsLeastRecentlyUsedNames() {
+        CleanedNameCache cache = new CleanedNameCache(ForbiddenWordsMatcher.compile(List.of("[x]")), 2);
+        RunMetrics metrics = new RunMetrics("rename");
+
+        assertEquals("Sample ", cache.clean("Sample [x]", metrics));
+        assertEquals("Sample ", cache.clean("Sample [x]", metrics));
+        for (int i = 0; i < 10; i++) {
+            cache.clean("Subs " + i, metrics);
+        }
+
+        assertEquals(2, cache.size());
+        assertEquals(1, metrics.count(RunMetrics.Counter.NAME_CACHE_HIT));
+        assertEquals(11, metrics.count(RunMetrics.Counter.NAME_CACHE_MISS));
+    }
+
+    @Test
+    void clean_withZeroCapacityAlwaysRunsMatcher() {
+        CleanedNameCache cache = new CleanedNameCache(ForbiddenWordsMatcher.compile(List.of("[x]")), 0);
+        RunMetrics metrics = new RunMetrics("rename");
+
+        assertEquals("Extras", cache.clean("[x]Extras", metrics));
+
+        assertEquals(0, cache.size());
+        assertEquals(0, metrics.count(RunMetrics.Counter.NAME_CACHE_MISS));
+    }
+}
@@ -0,0 +1,67 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static pl.syntaxerr.AppFiles.cleanupAppFiles;
+
+class DaemonServerTest {
+
+    @Test
+    void submit_runsDryRunCleanAndUndoJobsOnWarmDaemon(@TempDir Path tempDir) throws Exception {
+        Path library = Files.createDirectories(tempDir.resolve("library"));
+        Path original = Files.createFile(library.resolve("e01 [x].mkv"));
+        Path socket = tempDir.resolve("tfnc.sock");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+
+        try (DaemonServer server = new DaemonServer(CliOptions.parse(List.of("--socket=" + socket, "--workers=1")));
+             Stream<Path> siblings = Files.list(tempDir)) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socket)));
+            assertEquals(Set.of(library, socket), siblings.collect(Collectors.toSet()));
+            Thread thread = Thread.ofPlatform().start(() -> {
+                try {
+                    server.serve();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+
+            assertEquals(DaemonServer.EXIT_OK, DaemonClient.submit(socket, List.of("dry-run", library.toString(), "[x]"), out));
+            assertTrue(Files.exists(original));
+            assertTrue(output.toString(StandardCharsets.UTF_8).startsWith("RENAME\t" + original));
+
+            assertEquals(DaemonServer.EXIT_OK, DaemonClient.submit(socket, List.of("clean", library.toString(), "[x]"), out));
+            assertFalse(Files.exists(original));
+            assertTrue(Files.exists(library.resolve("e01 .mkv")));
+
+            assertEquals(DaemonServer.EXIT_OK, DaemonClient.submit(socket, List.of("undo", "--last-session", library.toString()), out));
+            assertTrue(Files.exists(original));
+
+            assertEquals(DaemonServer.EXIT_USAGE, DaemonClient.submit(socket, List.of("compact", library.toString()), out));
+
+            server.shutdown();
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } finally {
+            cleanupAppFiles();
+        }
+        assertFalse(Files.exists(socket));
+    }
+}
@@ -0,0 +1,79 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiagnosticsTest {
+
+    @Test
+    void flush_limitsConsoleOutputPerKindButWritesEveryErrorToFile(@TempDir Path tempDir) throws IOException {
+        Path errorFile = tempDir.resolve("error.txt");
+        List<String> console = new CopyOnWriteArrayList<>();
+        try (Diagnostics diagnostics = new Diagnostics(errorFile, capturing(console))) {
+            diagnostics.setLevel(Level.SEVERE);
+
+            for (int i = 0; i < 250; i++) {
+                diagnostics.error("access-denied", "No permission to rename: file" + i);
+            }
+            diagnostics.flush();
+        }
+
+        List<String> lines = Files.readAllLines(errorFile);
+        assertEquals(250, lines.size());
+        assertEquals("No permission to rename: file249", lines.getLast());
+        assertEquals(101, console.size());
+        assertTrue(console.getLast().contains("'access-denied' wystąpiło 250 razy"));
+    }
+
+    @Test
+    void error_isNeverDroppedWhenTheQueueIsFullAndCloseStopsTheWriter(@TempDir Path tempDir) throws IOException {
+        Path errorFile = tempDir.resolve("error.txt");
+        Diagnostics diagnostics = new Diagnostics(errorFile, Logger.getAnonymousLogger());
+        diagnostics.setLevel(Level.OFF);
+
+        for (int i = 0; i < 50_000; i++) {
+            diagnostics.info("Changed file/directory name: " + i);
+            diagnostics.error("visit-failure", "Failed to access: dir" + i);
+        }
+        diagnostics.close();
+        diagnostics.error("visit-failure", "after close");
+        diagnostics.close();
+
+        List<String> lines = Files.readAllLines(errorFile);
+        assertEquals(50_001, lines.size());
+        assertEquals("after close", lines.getLast());
+    }
+
+    private static Logger capturing(List<String> console) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                console.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return logger;
+    }
+}
@@ -0,0 +1,38 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectoryHandlesTest {
+
+    @Test
+    void move_renamesRelativeToParentAndNeverReplacesExistingTarget(@TempDir Path tempDir) throws IOException {
+        Path dir = Files.createDirectories(tempDir.resolve("Show [x]"));
+        Files.writeString(dir.resolve("e01 [x].mkv"), "first");
+        Files.writeString(dir.resolve("e02 [x].mkv"), "second");
+        Files.writeString(dir.resolve("e02.mkv"), "existing");
+
+        try (DirectoryHandles handles = new DirectoryHandles()) {
+            handles.move(dir.resolve("e01 [x].mkv"), dir.resolve("e01.mkv"));
+            assertThrows(FileAlreadyExistsException.class, () -> handles.move(dir.resolve("e02 [x].mkv"), dir.resolve("e02.mkv")));
+            handles.release(dir);
+            handles.move(dir, tempDir.resolve("Show"));
+        }
+
+        Path renamed = tempDir.resolve("Show");
+        assertFalse(Files.exists(dir));
+        assertEquals("first", Files.readString(renamed.resolve("e01.mkv")));
+        assertEquals("existing", Files.readString(renamed.resolve("e02.mkv")));
+        assertTrue(Files.exists(renamed.resolve("e02 [x].mkv")));
+    }
+}
@@ -0,0 +1,32 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DirectoryReorderBufferTest {
+
+    @Test
+    void add_renamesDeepestFirstAndResolvesPathsBelowEvictedDirectories() {
+        Path root = Path.of("/library").toAbsolutePath();
+        List<Path> renamed = new ArrayList<>();
+        DirectoryReorderBuffer buffer = new DirectoryReorderBuffer(1, dir -> {
+            renamed.add(dir);
+            return dir.resolveSibling(dir.getFileName() + "-clean");
+        });
+
+        buffer.add(root.resolve("Show"));
+        buffer.add(root.resolve("Show").resolve("Season 1"));
+        assertEquals(List.of(root.resolve("Show").resolve("Season 1")), renamed);
+        assertEquals(root.resolve("Show").resolve("Season 1-clean").resolve("e01.mkv"),
+                buffer.resolve(root.resolve("Show").resolve("Season 1").resolve("e01.mkv")));
+
+        buffer.flush();
+        assertEquals(List.of(root.resolve("Show").resolve("Season 1"), root.resolve("Show")), renamed);
+        assertEquals(0, buffer.size());
+    }
+}
@@ -0,0 +1,109 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DirectoryStateCacheTest {
+
+    @Test
+    void wrap_skipsUnchangedSubtreesAndRescansModifiedOnes(@TempDir Path tempDir) throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("library"));
+        Path changed = Files.createDirectories(root.resolve("Show").resolve("Season 1"));
+        Path untouched = Files.createDirectories(root.resolve("Movie"));
+        Files.createFile(changed.resolve("e01.mkv"));
+        Files.createFile(untouched.resolve("movie.mkv"));
+        Path cacheFile = tempDir.resolve("dirstate.cache");
+        String hash = DirectoryStateCache.rulesetHash(List.of("[x]"));
+
+        assertEquals(Set.of("library/Movie/movie.mkv", "library/Show/Season 1/e01.mkv"), walk(cacheFile, hash, root));
+        assertEquals(Set.of(), walk(cacheFile, hash, root));
+
+        Files.createFile(changed.resolve("e02.mkv"));
+
+        assertEquals(Set.of("library/Show/Season 1/e01.mkv", "library/Show/Season 1/e02.mkv"), walk(cacheFile, hash, root));
+        assertEquals(Set.of(), walk(cacheFile, hash, root));
+    }
+
+    @Test
+    void wrap_rescansRacyDirectoryWhoseEntryCountChangedWithinTheSameTimestamp(@TempDir Path tempDir) throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("library"));
+        Path show = Files.createDirectories(root.resolve("Show"));
+        Files.createFile(show.resolve("e01.mkv"));
+        Path cacheFile = tempDir.resolve("dirstate.cache");
+        String hash = DirectoryStateCache.rulesetHash(List.of("[x]"));
+        walk(cacheFile, hash, root);
+
+        FileTime showModified = Files.getLastModifiedTime(show);
+        FileTime rootModified = Files.getLastModifiedTime(root);
+        Files.createFile(show.resolve("e02.mkv"));
+        Files.setLastModifiedTime(show, showModified);
+        Files.setLastModifiedTime(root, rootModified);
+
+        assertEquals(Set.of("library/Show/e01.mkv", "library/Show/e02.mkv"), walk(cacheFile, hash, root));
+    }
+
+    @Test
+    void wrap_retriesEntriesThatFailedToRenameOnTheNextRun(@TempDir Path tempDir) throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("library"));
+        Path show = Files.createDirectories(root.resolve("Show"));
+        Path readOnly = Files.createFile(show.resolve("e01 [x].mkv"));
+        Path cacheFile = tempDir.resolve("dirstate.cache");
+        String hash = DirectoryStateCache.rulesetHash(List.of("[x]"));
+
+        // the renamer reports a read-only entry it had to skip; the directory's mtime stays as it was
+        assertEquals(Set.of("library/Show/e01 [x].mkv"), walk(cacheFile, hash, root, Set.of(readOnly)));
+        assertEquals(Set.of("library/Show/e01 [x].mkv"), walk(cacheFile, hash, root));
+        assertEquals(Set.of(), walk(cacheFile, hash, root));
+    }
+
+    @Test
+    void load_discardsStateRecordedForDifferentBlacklist(@TempDir Path tempDir) throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("library"));
+        Files.createFile(root.resolve("movie.mkv"));
+        Path cacheFile = tempDir.resolve("dirstate.cache");
+
+        walk(cacheFile, DirectoryStateCache.rulesetHash(List.of("[x]")), root);
+
+        assertEquals(Set.of("library/movie.mkv"), walk(cacheFile, DirectoryStateCache.rulesetHash(List.of("[x]", "[y]")), root));
+    }
+
+    private static Set<String> walk(Path cacheFile, String hash, Path root) throws IOException {
+        return walk(cacheFile, hash, root, Set.of());
+    }
+
+    private static Set<String> walk(Path cacheFile, String hash, Path root, Set<Path> failing) throws IOException {
+        Set<String> visited = new TreeSet<>();
+        DirectoryStateCache cache = DirectoryStateCache.load(cacheFile, hash);
+        new SequentialTreeTraversal().walk(root, cache.wrap(new TreeTraversal.Visitor() {
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                visited.add(root.getParent().relativize(file).toString().replace('\\', '/'));
+                if (failing.contains(file)) {
+                    cache.failed(file);
+                }
+            }
+
+            @Override
+            public void leaveDirectory(Path dir) {
+            }
+
+            @Override
+            public void visitFailed(Path path, IOException exc) {
+                throw new AssertionError(path.toString(), exc);
+            }
+        }));
+        cache.save(root);
+        return visited;
+    }
+}
@@ -0,0 +1,85 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DirectoryWatcherTest {
+
+    @Test
+    void run_coalescesNewSubtreeAndIgnoresOwnRenames(@TempDir Path tempDir) throws Exception {
+        BlockingQueue<List<Path>> batches = new LinkedBlockingQueue<>();
+        try (DirectoryWatcher watcher = new DirectoryWatcher(tempDir, Duration.ofMillis(200))) {
+            Thread thread = new Thread(() -> {
+                try {
+                    watcher.run((files, directories) -> {
+                        batches.add(directories.isEmpty() ? files : directories);
+                        for (Path path : files) {
+                            Path target = path.resolveSibling(path.getFileName().toString().replace(" [x]", ""));
+                            watcher.ignoreSelfRename(target);
+                            move(path, target);
+                        }
+                    });
+                } catch (IOException | InterruptedException ignored) {
+                    // watcher closed by the test
+                }
+            });
+            thread.start();
+
+            Path release = Files.createDirectories(tempDir.resolve("Show").resolve("Season 1"));
+            Files.createFile(release.resolve("e01.mkv"));
+            assertEquals(List.of(tempDir.resolve("Show")), batches.poll(10, TimeUnit.SECONDS));
+
+            Files.createFile(release.resolve("e02 [x].mkv"));
+            assertEquals(List.of(release.resolve("e02 [x].mkv")), batches.poll(10, TimeUnit.SECONDS));
+            assertNull(batches.poll(1, TimeUnit.SECONDS));
+
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    @Test
+    void run_reportsEntryWhoseSelfRenameWasForgottenAfterAFailedMove(@TempDir Path tempDir) throws Exception {
+        BlockingQueue<List<Path>> batches = new LinkedBlockingQueue<>();
+        try (DirectoryWatcher watcher = new DirectoryWatcher(tempDir, Duration.ofMillis(200))) {
+            Thread thread = new Thread(() -> {
+                try {
+                    watcher.run((files, directories) -> batches.add(files));
+                } catch (IOException | InterruptedException ignored) {
+                    // watcher closed by the test
+                }
+            });
+            thread.start();
+
+            Path target = tempDir.resolve("e01.mkv");
+            watcher.ignoreSelfRename(target);
+            watcher.forgetSelfRename(target);
+            Files.createFile(target);
+            assertEquals(List.of(target), batches.poll(10, TimeUnit.SECONDS));
+
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private static void move(Path source, Path target) {
+        try {
+            Files.move(source, target);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
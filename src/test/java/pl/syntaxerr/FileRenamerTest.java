@@ -3,14 +3,18 @@ package pl.syntaxerr;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static pl.syntaxerr.AppFiles.cleanupAppFiles;
 
 class FileRenamerTest {
 
@@ -33,8 +37,7 @@ class FileRenamerTest {
         Path newFile = Files.createFile(tempDir.resolve("new-name.txt"));
         Files.writeString(Path.of("history.txt"), "Changed file/directory name: old-name.txt to new-name.txt\n");
 
-        try {
-            FileRenamer renamer = new FileRenamer(true);
+        try (FileRenamer renamer = new FileRenamer()) {
             renamer.undoRenamesFromHistory(tempDir.toString());
         } finally {
             cleanupAppFiles();
@@ -52,8 +55,7 @@ class FileRenamerTest {
         Files.createFile(two.resolve("same-name.txt"));
         Files.writeString(Path.of("history.txt"), "Changed file/directory name: original.txt to same-name.txt\n");
 
-        try {
-            FileRenamer renamer = new FileRenamer(true);
+        try (FileRenamer renamer = new FileRenamer()) {
             renamer.undoRenamesFromHistory(tempDir.toString());
         } finally {
             cleanupAppFiles();
@@ -65,9 +67,240 @@ class FileRenamerTest {
         assertFalse(Files.exists(two.resolve("original.txt")));
     }
 
-    private void cleanupAppFiles() throws IOException {
-        Files.deleteIfExists(Path.of("history.txt"));
-        Files.deleteIfExists(Path.of("blacklist.txt"));
-        Files.deleteIfExists(Path.of("error.txt"));
+    @Test
+    void undoRenamesFromHistory_resolvesOldFormatEntriesAfterRevertingParentDirectory(@TempDir Path tempDir) throws IOException {
+        Path directory = Files.createDirectories(tempDir.resolve("Show"));
+        Files.createFile(directory.resolve("episode.mkv"));
+        Files.writeString(Path.of("history.txt"), """
+                Changed file/directory name: episode [x].mkv to episode.mkv
+                Changed file/directory name: Show [x] to Show
+                """);
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.undoRenamesFromHistory(tempDir.toString());
+        } finally {
+            cleanupAppFiles();
+        }
+
+        assertTrue(Files.exists(tempDir.resolve("Show [x]").resolve("episode [x].mkv")));
+    }
+
+    @Test
+    void renameFilesAndDirectoriesInDirectory_cleansNestedFilesAndDirectoriesInOneRun(@TempDir Path tempDir) throws IOException {
+        Path release = Files.createDirectories(tempDir.resolve("Movie [rarbg.to]").resolve("Subs [rarbg.to]"));
+        Files.createFile(release.resolve("[rarbg.to] english.srt"));
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.renameFilesAndDirectoriesInDirectory(tempDir.toString(), List.of("[rarbg.to]"));
+        } finally {
+            cleanupAppFiles();
+        }
+
+        assertTrue(Files.exists(tempDir.resolve("Movie").resolve("Subs").resolve("english.srt")));
+        assertFalse(Files.exists(tempDir.resolve("Movie [rarbg.to]")));
+    }
+
+    @Test
+    void undoRenamesFromHistory_revertsRunRecordedByJournal(@TempDir Path tempDir) throws IOException {
+        Path release = Files.createDirectories(tempDir.resolve("Show [rarbg.to]"));
+        Files.createFile(release.resolve("episode [rarbg.to].mkv"));
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.renameFilesAndDirectoriesInDirectory(tempDir.toString(), List.of("[rarbg.to]"));
+            renamer.undoRenamesFromHistory(tempDir.toString());
+        } finally {
+            cleanupAppFiles();
+        }
+
+        assertTrue(Files.exists(release.resolve("episode [rarbg.to].mkv")));
+        assertFalse(Files.exists(tempDir.resolve("Show")));
+    }
+
+    @Test
+    void undoRenamesFromHistory_parallelUndoRevertsChainsAndNestedDirectoriesInOrder(@TempDir Path tempDir) throws IOException {
+        for (int i = 1; i <= 3; i++) {
+            Path season = Files.createDirectories(tempDir.resolve("Show " + i + " [a][b]").resolve("Season [a]"));
+            Files.createFile(season.resolve("e01 [b][a].mkv"));
+            Files.createFile(season.resolve("e02 [a].mkv"));
+        }
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.setParallelism(4);
+            renamer.renameFilesAndDirectoriesInDirectory(tempDir.toString(), List.of("[a]"));
+            renamer.renameFilesAndDirectoriesInDirectory(tempDir.toString(), List.of("[b]"));
+            assertTrue(Files.exists(tempDir.resolve("Show 2").resolve("Season").resolve("e01 .mkv")));
+
+            renamer.undoRenamesFromHistory(tempDir.toString());
+            assertEquals(0, renamer.lastRunMetrics().count(RunMetrics.Counter.SKIPPED));
+        } finally {
+            cleanupAppFiles();
+        }
+
+        for (int i = 1; i <= 3; i++) {
+            Path season = tempDir.resolve("Show " + i + " [a][b]").resolve("Season [a]");
+            assertTrue(Files.exists(season.resolve("e01 [b][a].mkv")));
+            assertTrue(Files.exists(season.resolve("e02 [a].mkv")));
+            assertFalse(Files.exists(tempDir.resolve("Show " + i + " [b]")));
+        }
+    }
+
+    @Test
+    void renameFilesAndDirectoriesInDirectory_resumeSkipsFinishedSubtreesAndRenamesJournaledAfterCheckpoint(@TempDir Path tempDir) throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("root"));
+        Path first = Files.createDirectories(root.resolve("A [x]"));
+        Path second = Files.createDirectories(root.resolve("B [x]"));
+        Files.createFile(first.resolve("f [x].mkv"));
+        Files.createFile(second.resolve("g [x[x]].mkv"));
+        List<String> words = List.of("[x]");
+
+        try {
+            HistoryStore history = new HistoryStore(Path.of("history.txt"));
+            try (HistoryJournal journal = history.openSession(root, HistoryJournal.Durability.NONE)) {
+                RunCheckpoint checkpoint = RunCheckpoint.start(RunCheckpoint.fileFor(Path.of(""), root), root,
+                        DirectoryStateCache.rulesetHash(words, WalkFilter.NONE), Duration.ofHours(1));
+                checkpoint.begin(history, journal);
+                renameJournaled(journal, first.resolve("f [x].mkv"), "f.mkv");
+                renameJournaled(journal, first, "A");
+                checkpoint.finished(first, root.resolve("A"));
+                checkpoint.save();
+
+                renameJournaled(journal, second.resolve("g [x[x]].mkv"), "g [x].mkv");
+                journal.recordRename(second, root.resolve("B"));
+            }
+            Files.createFile(root.resolve("A").resolve("h [x].mkv"));
+
+            try (FileRenamer renamer = new FileRenamer()) {
+                renamer.setCheckpoints(true, true);
+                renamer.renameFilesAndDirectoriesInDirectory(root.toString(), words);
+            }
+
+            assertTrue(Files.exists(root.resolve("A").resolve("h [x].mkv")));
+            assertTrue(Files.exists(root.resolve("B").resolve("g [x].mkv")));
+            assertFalse(Files.exists(RunCheckpoint.fileFor(Path.of(""), root)));
+            assertEquals(1, history.readEntries(HistorySelection.ALL).stream()
+                    .filter(entry -> entry.hasAbsolutePaths() && entry.newPath().equals(root.resolve("B").toAbsolutePath()))
+                    .count());
+        } finally {
+            cleanupAppFiles();
+        }
+    }
+
+    @Test
+    void countEntries_matchesEntriesVisitedByRenameWalk(@TempDir Path tempDir) throws IOException {
+        Path release = Files.createDirectories(tempDir.resolve("Show [rarbg.to]").resolve("Season 1"));
+        Files.createFile(release.resolve("e01 [rarbg.to].mkv"));
+        Files.createFile(release.resolve("e02.mkv"));
+
+        long counted;
+        long visited;
+        try (FileRenamer renamer = new FileRenamer()) {
+            counted = renamer.countEntries(tempDir);
+            renamer.renameFilesAndDirectoriesInDirectory(tempDir.toString(), List.of("[rarbg.to]"));
+            visited = renamer.lastRunMetrics().count(RunMetrics.Counter.VISITED);
+        } finally {
+            cleanupAppFiles();
+        }
+
+        assertEquals(5, counted);
+        assertEquals(counted, visited);
+    }
+
+    @Test
+    void incrementalRun_rescansDirectoriesWhoseChildrenAnEarlierFilterExcluded(@TempDir Path tempDir) throws IOException {
+        Path release = Files.createDirectories(tempDir.resolve("Show [x]").resolve("Sub [x]"));
+        Files.createFile(release.resolve("e [x].mkv"));
+        Files.createFile(tempDir.resolve("Other.mkv"));
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.setIncremental(true);
+            renamer.setWalkFilter(WalkFilter.NONE.withOverrides(List.of(), List.of("Show*"), null, null));
+            renamer.renameFilesAndDirectoriesInDirectory(tempDir.toString(), List.of("[x]"));
+            assertTrue(Files.exists(release.resolve("e [x].mkv")));
+            assertEquals(2, renamer.countEntries(tempDir));
+
+            renamer.setWalkFilter(WalkFilter.NONE);
+            renamer.renameFilesAndDirectoriesInDirectory(tempDir.toString(), List.of("[x]"));
+        } finally {
+            cleanupAppFiles();
+        }
+
+        assertTrue(Files.exists(tempDir.resolve("Show").resolve("Sub").resolve("e .mkv")));
+    }
+
+    @Test
+    void renameRoots_processesEveryRootIntoOneSessionAndReportsMissingRoots(@TempDir Path tempDir) throws IOException {
+        Path movies = Files.createDirectories(tempDir.resolve("movies"));
+        Path shows = Files.createDirectories(tempDir.resolve("shows"));
+        Files.createFile(movies.resolve("[rarbg.to] movie.mkv"));
+        Files.createFile(shows.resolve("[rarbg.to] episode.mkv"));
+        Path missing = tempDir.resolve("missing");
+
+        List<BatchManifest.RootResult> results;
+        List<HistorySession> sessions;
+        try (FileRenamer renamer = new FileRenamer()) {
+            results = renamer.renameRoots(List.of(movies, shows, missing), List.of("[rarbg.to]"), 1);
+            sessions = new HistoryStore(Path.of("history.txt")).sessions();
+        } finally {
+            cleanupAppFiles();
+        }
+
+        assertTrue(Files.exists(movies.resolve("movie.mkv")));
+        assertTrue(Files.exists(shows.resolve("episode.mkv")));
+        assertEquals(List.of(1L, 1L, 0L), results.stream().map(BatchManifest.RootResult::renamed).toList());
+        assertEquals(List.of(false, false, true), results.stream().map(BatchManifest.RootResult::failed).toList());
+        assertEquals(1, sessions.size());
+        assertEquals(tempDir.toAbsolutePath().normalize(), sessions.getFirst().root());
+    }
+
+    @Test
+    void renameListedPaths_cleansOnlyListedEntriesWithDirectoriesAfterTheirChildren(@TempDir Path tempDir) throws IOException {
+        Path release = Files.createDirectories(tempDir.resolve("Show [x]"));
+        Path season = Files.createDirectories(release.resolve("Season 1 [x]"));
+        Files.createFile(season.resolve("e01 [x].mkv"));
+        Files.createFile(season.resolve("e02 [x].mkv"));
+        Path untouched = Files.createDirectories(tempDir.resolve("Older [x]"));
+        String list = String.join("\n", release.toString(), season.toString(), season.resolve("e01 [x].mkv").toString(),
+                tempDir.resolve("missing [x]").toString()) + "\n";
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.setWalkFilter(WalkFilter.NONE);
+            try (PathListReader paths = new PathListReader(new ByteArrayInputStream(list.getBytes(StandardCharsets.UTF_8)))) {
+                renamer.renameListedPaths(paths, List.of("[x]"));
+            }
+        } finally {
+            cleanupAppFiles();
+        }
+
+        Path cleanedSeason = tempDir.resolve("Show").resolve("Season 1");
+        assertTrue(Files.exists(cleanedSeason.resolve("e01 .mkv")));
+        assertTrue(Files.exists(cleanedSeason.resolve("e02 [x].mkv")));
+        assertTrue(Files.isDirectory(untouched));
+        assertFalse(Files.exists(release));
+    }
+
+    @Test
+    void renameListedPaths_skipsEntriesInsideExcludedDirectories(@TempDir Path tempDir) throws IOException {
+        Path thumbnails = Files.createDirectories(tempDir.resolve("Movie").resolve("@eaDir"));
+        Path inside = Files.createFile(thumbnails.resolve("Movie [x].mkv"));
+        Path outside = Files.createFile(tempDir.resolve("Movie").resolve("Movie [x].mkv"));
+        String list = inside + "\0" + outside + "\0";
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.setWalkFilter(WalkFilter.parse(List.of("exclude=@eaDir")));
+            try (PathListReader paths = new PathListReader(new ByteArrayInputStream(list.getBytes(StandardCharsets.UTF_8)))) {
+                renamer.renameListedPaths(paths, List.of("[x]"));
+            }
+        } finally {
+            cleanupAppFiles();
+        }
+
+        assertTrue(Files.exists(inside));
+        assertTrue(Files.exists(outside.resolveSibling("Movie .mkv")));
+    }
+
+    private static void renameJournaled(HistoryJournal journal, Path source, String newName) throws IOException {
+        Path target = source.resolveSibling(newName);
+        journal.recordRename(source, target);
+        Files.move(source, target);
     }
 }
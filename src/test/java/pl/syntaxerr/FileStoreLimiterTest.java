@@ -0,0 +1,31 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileStoreLimiterTest {
+
+    @Test
+    void limit_growsWhileLatencyStaysFlatAndBacksOffWhenItRises() throws IOException, InterruptedException {
+        FileStoreLimiter.Limit limit = new FileStoreLimiter.Limit(8);
+        for (int round = 0; round < 200; round++) {
+            int inFlight = limit.limit();
+            for (int i = 0; i < inFlight; i++) {
+                limit.acquire();
+            }
+            for (int i = 0; i < inFlight; i++) {
+                limit.release(2_000_000);
+            }
+        }
+        assertEquals(8, limit.limit());
+
+        Thread.sleep(5);
+        limit.acquire();
+        limit.release(200_000_000);
+        assertTrue(limit.limit() < 8, "limit=" + limit.limit());
+    }
+}
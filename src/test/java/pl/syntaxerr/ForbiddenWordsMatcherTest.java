@@ -0,0 +1,118 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ForbiddenWordsMatcherTest {
+
+    @Test
+    void clean_removesEveryOccurrenceIgnoringAsciiCase() {
+        ForbiddenWordsMatcher matcher = ForbiddenWordsMatcher.compile(List.of("[rarbg.to]", "[YTS.MX]"));
+
+        assertEquals("Movie  (2020).mkv", matcher.clean("[RARBG.TO]Movie [yts.mx] (2020)[rarbg.to].mkv"));
+    }
+
+    @Test
+    void clean_skipsBlankWordsAndKeepsUnmatchedNames() {
+        ForbiddenWordsMatcher matcher = ForbiddenWordsMatcher.compile(Arrays.asList(" ", null, "[x]"));
+
+        assertEquals("plain name.txt", matcher.clean("plain name.txt"));
+    }
+
+    @Test
+    void clean_appliesWordsInListOrderLikeSequentialReplaceAll() {
+        ForbiddenWordsMatcher matcher = ForbiddenWordsMatcher.compile(List.of("b", "ac", "ab"));
+
+        assertEquals(sequentialReplaceAll("aabcab", List.of("b", "ac", "ab")), matcher.clean("aabcab"));
+    }
+
+    @Test
+    void clean_matchesSequentialReplaceAllOnRandomInput() {
+        Random random = new Random(42);
+        String alphabet = "abAB[].ż";
+        for (int round = 0; round < 2000; round++) {
+            List<String> words = new ArrayList<>();
+            for (int i = random.nextInt(6); i >= 0; i--) {
+                words.add(randomString(random, alphabet, 1 + random.nextInt(3)));
+            }
+            String name = randomString(random, alphabet, random.nextInt(16));
+
+            assertEquals(sequentialReplaceAll(name, words), ForbiddenWordsMatcher.compile(words).clean(name),
+                    "words=" + words + ", name=" + name);
+        }
+    }
+
+    @Test
+    void clean_supportsTypedGlobRegexAndLiteralRules() {
+        ForbiddenWordsMatcher matcher = ForbiddenWordsMatcher.compile(List.of(
+                "glob:[www.*.org]", "regex:^\\d+\\.\\s*", "regex:(\\w)\\1{3,}", "regex:[", "literal:glob:", "[x]"));
+
+        assertEquals("Movie [www.site.com] .mkv", matcher.clean("01. Movie [WWW.torrents.ORG][www.site.com] [x]glob:.mkv"));
+        assertEquals("Show .mkv", matcher.clean("Show aaaa.mkv"));
+    }
+
+    @Test
+    void compile_keepsRulesThatOnlyClashOnceCombined() {
+        ForbiddenWordsMatcher namedGroups = ForbiddenWordsMatcher.compile(List.of("regex:(?<t>x)", "regex:(?<t>y)"));
+        ForbiddenWordsMatcher openQuote = ForbiddenWordsMatcher.compile(List.of("regex:\\Qa", "regex:b"));
+        ForbiddenWordsMatcher twoQuotes = ForbiddenWordsMatcher.compile(List.of("regex:\\Q[a]", "regex:\\Qb\\E"));
+
+        assertEquals("z", namedGroups.clean("xyz"));
+        assertEquals("c", openQuote.clean("abc"));
+        assertEquals("c", twoQuotes.clean("[a]bc"));
+    }
+
+    @Test
+    void clean_typedRulesMatchSequentialReplaceAllOnRandomInput() {
+        Random random = new Random(7);
+        String alphabet = "abAB[].";
+        String[] rules = {"glob:a*b", "glob:[?]", "glob:*.", "regex:b+a", "regex:^a", "regex:(a)\\1", "literal:ab", "b"};
+        for (int round = 0; round < 2000; round++) {
+            List<String> words = new ArrayList<>();
+            for (int i = random.nextInt(4); i >= 0; i--) {
+                words.add(rules[random.nextInt(rules.length)]);
+            }
+            String name = randomString(random, alphabet, random.nextInt(16));
+
+            assertEquals(sequentialReplaceAll(name, words), ForbiddenWordsMatcher.compile(words).clean(name),
+                    "words=" + words + ", name=" + name);
+        }
+    }
+
+    private static String sequentialReplaceAll(String name, List<String> words) {
+        String result = name;
+        for (String word : words) {
+            String regex;
+            if (word.startsWith("regex:")) {
+                regex = word.substring("regex:".length());
+            } else if (word.startsWith("glob:")) {
+                String glob = word.substring("glob:".length());
+                StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < glob.length(); i++) {
+                    char c = glob.charAt(i);
+                    builder.append(c == '?' ? "." : c == '*' ? (i == glob.length() - 1 ? ".*" : ".*?") : Pattern.quote(String.valueOf(c)));
+                }
+                regex = "(?s)" + builder;
+            } else {
+                regex = Pattern.quote(word.startsWith("literal:") ? word.substring("literal:".length()) : word);
+            }
+            result = result.replaceAll("(?i)" + regex, "");
+        }
+        return result;
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,41 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HistoryJournalTest {
+
+    @Test
+    void recordRename_writesLegacyAndStructuredLines(@TempDir Path tempDir) throws IOException {
+        Path history = tempDir.resolve("history.txt");
+        Path oldPath = tempDir.resolve("old [x].txt");
+        Path newPath = tempDir.resolve("old.txt");
+
+        try (HistoryJournal journal = new HistoryJournal(history, HistoryJournal.Durability.GROUP_COMMIT)) {
+            journal.recordRename(oldPath, newPath);
+            journal.recordAborted(oldPath, newPath);
+        }
+
+        assertEquals(List.of(
+                "Changed file/directory name: old [x].txt to old.txt",
+                "RENAMED\t" + oldPath.toAbsolutePath() + "\t" + newPath.toAbsolutePath(),
+                "ABORTED\t" + oldPath.toAbsolutePath() + "\t" + newPath.toAbsolutePath()
+        ), Files.readAllLines(history));
+    }
+
+    @Test
+    void recordRename_failsAfterClose(@TempDir Path tempDir) throws IOException {
+        HistoryJournal journal = new HistoryJournal(tempDir.resolve("history.txt"), HistoryJournal.Durability.NONE);
+        journal.close();
+
+        assertThrows(IOException.class, () -> journal.recordRename(tempDir.resolve("a"), tempDir.resolve("b")));
+    }
+}
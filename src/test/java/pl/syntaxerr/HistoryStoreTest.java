@@ -0,0 +1,179 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryStoreTest {
+
+    @Test
+    void sessions_keepsLegacyLinesAsSessionZero(@TempDir Path tempDir) throws IOException {
+        Path history = tempDir.resolve("history.txt");
+        Files.writeString(history, "Changed file/directory name: a [x] to a\n");
+        HistoryStore store = new HistoryStore(history);
+
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            journal.recordRename(tempDir.resolve("b [x]"), tempDir.resolve("b"));
+        }
+
+        List<HistorySession> sessions = store.sessions();
+        assertEquals(2, sessions.size());
+        assertTrue(sessions.get(0).isLegacy());
+        assertEquals(1, sessions.get(1).id());
+        assertEquals(tempDir.toAbsolutePath().normalize(), sessions.get(1).root());
+    }
+
+    @Test
+    void readEntries_lastSessionReturnsOnlyNewestRun(@TempDir Path tempDir) throws IOException {
+        HistoryStore store = new HistoryStore(tempDir.resolve("history.txt"));
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            journal.recordRename(tempDir.resolve("first [x]"), tempDir.resolve("first"));
+        }
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            journal.recordRename(tempDir.resolve("second [x]"), tempDir.resolve("second"));
+        }
+
+        List<HistoryEntry> entries = store.readEntries(new HistorySelection(null, true, null));
+
+        assertEquals(1, entries.size());
+        assertEquals("second [x]", entries.getFirst().oldName());
+        assertEquals(2, store.readEntries(HistorySelection.ALL).size());
+    }
+
+    @Test
+    void readEntries_rebuildsMissingIndex(@TempDir Path tempDir) throws IOException {
+        Path history = tempDir.resolve("history.txt");
+        HistoryStore store = new HistoryStore(history);
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            journal.recordRename(tempDir.resolve("first [x]"), tempDir.resolve("first"));
+        }
+        Files.delete(tempDir.resolve("history.txt.idx"));
+
+        List<HistoryEntry> entries = new HistoryStore(history).readEntries(new HistorySelection(1L, false, null));
+
+        assertEquals(1, entries.size());
+    }
+
+    @Test
+    void forEachEntryReversed_streamsNewestFirstAndHonoursLaterRevertMarkers(@TempDir Path tempDir) throws IOException {
+        Path history = tempDir.resolve("history.txt");
+        Files.writeString(history, "Changed file/directory name: legacy [x] to legacy\r\n");
+        HistoryStore store = new HistoryStore(history);
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            journal.recordRename(tempDir.resolve("first [x]"), tempDir.resolve("first"));
+            journal.recordRename(tempDir.resolve("second [x]"), tempDir.resolve("second"));
+        }
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            journal.recordRename(tempDir.resolve("third [x]"), tempDir.resolve("third"));
+        }
+        try (HistoryJournal journal = store.openAppend(HistoryJournal.Durability.NONE)) {
+            journal.recordReverted(tempDir.resolve("first [x]"), tempDir.resolve("first"));
+        }
+
+        List<String> all = new ArrayList<>();
+        store.forEachEntryReversed(HistorySelection.ALL, entry -> all.add(entry.oldName()));
+        List<HistoryEntry> firstSession = store.readEntries(new HistorySelection(1L, false, null));
+        List<String> newest = new ArrayList<>();
+        store.forEachEntryReversed(HistorySelection.ALL, entry -> newest.add(entry.oldName()) && newest.size() < 1);
+
+        assertEquals(List.of("third [x]", "second [x]", "legacy [x]"), all);
+        assertEquals(1, firstSession.size());
+        assertEquals(tempDir.resolve("second [x]").toAbsolutePath(), firstSession.getFirst().oldPath());
+        assertEquals(List.of("third [x]"), newest);
+    }
+
+    @Test
+    void forEachEntryReversed_resolvesCancellationsBeyondThePendingLimitTheSameWay(@TempDir Path tempDir) throws IOException {
+        Path history = tempDir.resolve("history.txt");
+        HistoryStore store = new HistoryStore(history);
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            for (int i = 0; i < 40; i++) {
+                journal.recordRename(tempDir.resolve("e" + i + " [x]"), tempDir.resolve("e" + i));
+            }
+            journal.recordRename(tempDir.resolve("same [x]"), tempDir.resolve("same"));
+            journal.recordRename(tempDir.resolve("same [x]"), tempDir.resolve("same"));
+        }
+        try (HistoryJournal journal = store.openAppend(HistoryJournal.Durability.NONE)) {
+            for (int i = 39; i >= 20; i--) {
+                journal.recordReverted(tempDir.resolve("e" + i + " [x]"), tempDir.resolve("e" + i));
+            }
+            journal.recordReverted(tempDir.resolve("same [x]"), tempDir.resolve("same"));
+        }
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            journal.recordRename(tempDir.resolve("late [x]"), tempDir.resolve("late"));
+            journal.recordAborted(tempDir.resolve("e3 [x]"), tempDir.resolve("e3"));
+            journal.recordAborted(tempDir.resolve("e5 [x]"), tempDir.resolve("e5"));
+        }
+
+        List<String> expected = new ArrayList<>(List.of("late [x]", "same [x]"));
+        for (int i = 19; i >= 0; i--) {
+            if (i != 3 && i != 5) {
+                expected.add("e" + i + " [x]");
+            }
+        }
+        for (int limit : List.of(1, 2, 7, 1_000)) {
+            List<String> reversed = new ArrayList<>();
+            store.forEachEntryReversed(HistorySelection.ALL, entry -> reversed.add(entry.oldName()), limit);
+            assertEquals(expected, reversed, "limit " + limit);
+        }
+    }
+
+    @Test
+    void compact_dropsRevertedEntriesAndEmptySessions(@TempDir Path tempDir) throws IOException {
+        Path history = tempDir.resolve("history.txt");
+        HistoryStore store = new HistoryStore(history);
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            journal.recordRename(tempDir.resolve("first [x]"), tempDir.resolve("first"));
+        }
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            journal.recordRename(tempDir.resolve("second [x]"), tempDir.resolve("second"));
+        }
+        try (HistoryJournal journal = store.openAppend(HistoryJournal.Durability.NONE)) {
+            journal.recordReverted(tempDir.resolve("first [x]"), tempDir.resolve("first"));
+        }
+
+        HistoryStore.CompactionResult result = store.compact();
+
+        assertEquals(1, result.entriesAfter());
+        assertEquals(1, result.sessionsAfter());
+        List<HistorySession> sessions = store.sessions();
+        assertEquals(1, sessions.size());
+        assertEquals(2, sessions.getFirst().id());
+        assertFalse(Files.readString(history).contains("first"));
+    }
+
+    @Test
+    void compact_streamsWithBoundedPendingCancelsAndKeepsLegacyEntries(@TempDir Path tempDir) throws IOException {
+        Path history = tempDir.resolve("history.txt");
+        Files.writeString(history, "Changed file/directory name: old [x] to old\nChanged file/directory name: gone [x] to gone\n");
+        HistoryStore store = new HistoryStore(history);
+        try (HistoryJournal journal = store.openSession(tempDir, HistoryJournal.Durability.NONE)) {
+            for (int i = 0; i < 6; i++) {
+                journal.recordRename(tempDir.resolve("e" + i + " [x]"), tempDir.resolve("e" + i));
+            }
+            journal.recordAborted(tempDir.resolve("e1 [x]"), tempDir.resolve("e1"));
+            journal.recordReverted(tempDir.resolve("e4 [x]"), tempDir.resolve("e4"));
+            journal.recordReverted(tempDir.resolve("gone [x]"), tempDir.resolve("gone"));
+            journal.recordReverted(tempDir.resolve("e2 [x]"), tempDir.resolve("e2"));
+        }
+
+        HistoryStore.CompactionResult result = store.compact(1);
+
+        assertEquals(4, result.entriesAfter());
+        assertEquals(1, result.sessionsAfter());
+        assertEquals(List.of("old [x]", "e0 [x]", "e3 [x]", "e5 [x]"),
+                store.readEntries(HistorySelection.ALL).stream().map(HistoryEntry::oldName).toList());
+        String compacted = Files.readString(history);
+        assertFalse(compacted.contains("gone"));
+        assertFalse(compacted.contains("REVERTED"));
+    }
+}
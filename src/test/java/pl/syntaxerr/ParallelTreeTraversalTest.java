@@ -0,0 +1,52 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelTreeTraversalTest {
+
+    @Test
+    void walk_leavesDirectoryOnlyAfterAllDescendants(@TempDir Path tempDir) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            Path nested = Files.createDirectories(tempDir.resolve("dir" + i).resolve("nested"));
+            Files.createFile(nested.resolve("file.txt"));
+            Files.createFile(tempDir.resolve("dir" + i).resolve("file.txt"));
+        }
+        List<Path> events = new CopyOnWriteArrayList<>();
+
+        new ParallelTreeTraversal(4).walk(tempDir, new TreeTraversal.Visitor() {
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                events.add(file);
+            }
+
+            @Override
+            public void leaveDirectory(Path dir) {
+                events.add(dir);
+            }
+
+            @Override
+            public void visitFailed(Path path, IOException exc) {
+                throw new AssertionError(path.toString(), exc);
+            }
+        });
+
+        assertEquals(33, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            for (int j = i + 1; j < events.size(); j++) {
+                assertTrue(!events.get(j).startsWith(events.get(i)) || events.get(j).equals(events.get(i)),
+                        events.get(i) + " was left before its descendant " + events.get(j));
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PathListReaderTest {
+
+    @Test
+    void next_detectsNulSeparatedListsAndKeepsNewlinesAndSpacesInNames(@TempDir Path tempDir) throws IOException {
+        String list = tempDir.resolve("a\nb ") + "\0\0" + tempDir.resolve("c") + "\0";
+
+        try (PathListReader reader = new PathListReader(new ByteArrayInputStream(list.getBytes(StandardCharsets.UTF_8)))) {
+            assertEquals(tempDir.resolve("a\nb "), reader.next());
+            assertEquals(tempDir.resolve("c"), reader.next());
+            assertNull(reader.next());
+        }
+
+        try (PathListReader reader = new PathListReader(new ByteArrayInputStream((tempDir.resolve("d") + "\r\n\n" + tempDir.resolve("e"))
+                .getBytes(StandardCharsets.UTF_8)))) {
+            assertEquals(tempDir.resolve("d"), reader.next());
+            assertEquals(tempDir.resolve("e"), reader.next());
+            assertNull(reader.next());
+        }
+    }
+}
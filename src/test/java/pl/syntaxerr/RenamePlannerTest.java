@@ -0,0 +1,50 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenamePlannerTest {
+
+    @Test
+    void plan_rejectsTargetsThatCollide(@TempDir Path tempDir) throws IOException {
+        Files.createFile(tempDir.resolve("movie.mkv"));
+        Files.createFile(tempDir.resolve("movie[x].mkv"));
+        Files.createFile(tempDir.resolve("show[x].mkv"));
+        Files.createFile(tempDir.resolve("show[y].mkv"));
+        RenamePlanner planner = new RenamePlanner(ForbiddenWordsMatcher.compile(List.of("[x]", "[y]")),
+                new SequentialTreeTraversal(), (path, exc) -> {
+            throw new AssertionError(path.toString(), exc);
+        });
+
+        RenamePlan plan = planner.plan(tempDir);
+
+        assertEquals(1, plan.operations().size());
+        assertEquals("show.mkv", plan.operations().getFirst().newName());
+        assertEquals(2, plan.rejections().size());
+        assertTrue(plan.rejections().stream().anyMatch(rejection -> rejection.source().endsWith("movie[x].mkv")));
+    }
+
+    @Test
+    void plan_ordersChildrenBeforeTheirDirectory(@TempDir Path tempDir) throws IOException {
+        Path directory = Files.createDirectories(tempDir.resolve("Show[x]"));
+        Files.createFile(directory.resolve("episode[x].mkv"));
+        RenamePlanner planner = new RenamePlanner(ForbiddenWordsMatcher.compile(List.of("[x]")),
+                new SequentialTreeTraversal(), (path, exc) -> {
+            throw new AssertionError(path.toString(), exc);
+        });
+
+        RenamePlan plan = planner.plan(tempDir);
+
+        assertEquals(List.of(directory.resolve("episode[x].mkv"), directory),
+                plan.operations().stream().map(RenamePlan.Operation::source).toList());
+        assertTrue(plan.rejections().isEmpty());
+    }
+}
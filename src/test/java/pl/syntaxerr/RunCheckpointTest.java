@@ -0,0 +1,24 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RunCheckpointTest {
+
+    @Test
+    void checkpoints_areOptInAndNamedPerRoot(@TempDir Path tempDir) {
+        assertFalse(CliOptions.parse(List.of("dir")).checkpoint());
+        assertTrue(CliOptions.parse(List.of("--checkpoint", "dir")).checkpoint());
+        assertTrue(CliOptions.parse(List.of("--resume", "dir")).checkpoint());
+        assertEquals(tempDir, RunCheckpoint.fileFor(tempDir, tempDir.resolve("a")).getParent());
+        assertNotEquals(RunCheckpoint.fileFor(tempDir, tempDir.resolve("a")), RunCheckpoint.fileFor(tempDir, tempDir.resolve("b")));
+    }
+}
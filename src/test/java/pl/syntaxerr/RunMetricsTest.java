@@ -0,0 +1,70 @@
+package pl.syntaxerr;
+
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static pl.syntaxerr.AppFiles.cleanupAppFiles;
+
+class RunMetricsTest {
+
+    @Test
+    void latencyHistogram_reportsLog2BucketUpperBounds() {
+        RunMetrics.LatencyHistogram histogram = new RunMetrics.LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1_000);
+        }
+        histogram.record(1_000_000);
+
+        assertEquals(100, histogram.count());
+        assertEquals(1_023, histogram.percentileNanos(0.50));
+        assertEquals(1_023, histogram.percentileNanos(0.99));
+        assertEquals(1_000_000, histogram.percentileNanos(1.0));
+    }
+
+    @Test
+    void renameRun_countsEntriesAndPublishesJfrEventsAndJson(@TempDir Path tempDir) throws IOException {
+        Path library = Files.createDirectories(tempDir.resolve("library").resolve("Show [x]"));
+        Files.createFile(library.resolve("e01 [x].mkv"));
+        Files.createFile(library.resolve("e02.mkv"));
+        Path metricsFile = tempDir.resolve("metrics.json");
+        Path recordingFile = tempDir.resolve("run.jfr");
+
+        RunMetrics metrics;
+        try (FileRenamer renamer = new FileRenamer(); Recording recording = new Recording()) {
+            renamer.setMetricsFile(metricsFile);
+            recording.start();
+            renamer.renameFilesAndDirectoriesInDirectory(tempDir.resolve("library").toString(), List.of("[x]"));
+            recording.stop();
+            recording.dump(recordingFile);
+            metrics = renamer.lastRunMetrics();
+        } finally {
+            cleanupAppFiles();
+        }
+
+        assertEquals(4, metrics.count(RunMetrics.Counter.VISITED));
+        assertEquals(2, metrics.count(RunMetrics.Counter.MATCHED));
+        assertEquals(2, metrics.count(RunMetrics.Counter.RENAMED));
+        assertEquals(2, metrics.moveLatency().count());
+        assertEquals(2, metrics.journalLatency().count());
+
+        Set<String> events = RecordingFile.readAllEvents(recordingFile).stream()
+                .map(RecordedEvent::getEventType)
+                .map(EventType::getName)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of("pl.syntaxerr.FileMove", "pl.syntaxerr.HistoryAppend", "pl.syntaxerr.RunPhase", "pl.syntaxerr.RunSummary"), events);
+        assertTrue(Files.readString(metricsFile).contains("\"renamed\":2"));
+    }
+}
@@ -0,0 +1,30 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UndoSchedulerTest {
+
+    @Test
+    void dependents_orderChainsAndParentDirectoriesButLeaveSiblingsIndependent() {
+        Path root = Path.of("/data");
+        List<HistoryEntry> newestFirst = List.of(
+                entry(root.resolve("c"), root.resolve("b")),
+                entry(root.resolve("b"), root.resolve("a")),
+                entry(root.resolve("Show"), root.resolve("Show [x]")),
+                entry(root.resolve("Show [x]/e01.mkv"), root.resolve("Show [x]/e01 [x].mkv")),
+                entry(root.resolve("Show [x]/e02.mkv"), root.resolve("Show [x]/e02 [x].mkv")),
+                entry(root.resolve("Other/e01.mkv"), root.resolve("Other/e01 [x].mkv")));
+
+        assertEquals(List.of(List.of(1), List.of(), List.of(3, 4), List.of(), List.of(), List.of()),
+                UndoScheduler.dependents(newestFirst));
+    }
+
+    private static HistoryEntry entry(Path newPath, Path oldPath) {
+        return new HistoryEntry(oldPath.getFileName().toString(), newPath.getFileName().toString(), oldPath, newPath);
+    }
+}
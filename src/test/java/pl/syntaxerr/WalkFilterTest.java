@@ -0,0 +1,88 @@
+package pl.syntaxerr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static pl.syntaxerr.AppFiles.cleanupAppFiles;
+
+class WalkFilterTest {
+
+    @Test
+    void wrap_prunesExcludedAndTooDeepDirectoriesBeforeTheyAreListed(@TempDir Path tempDir) throws IOException {
+        Files.createDirectories(tempDir.resolve(".git").resolve("objects"));
+        Files.createDirectories(tempDir.resolve("Show").resolve("@eaDir"));
+        Files.createDirectories(tempDir.resolve("Show").resolve("Season 1").resolve("Extras"));
+        Files.createFile(tempDir.resolve("Show").resolve("e01.mkv"));
+        Files.createFile(tempDir.resolve("Show").resolve("e01.nfo"));
+        Files.createFile(tempDir.resolve("Show").resolve("Season 1").resolve("e02.mkv"));
+        Files.createFile(tempDir.resolve("notes.mkv"));
+        WalkFilter filter = WalkFilter.parse(List.of("# test", "exclude=.git", "exclude=Show/@eaDir", "include=*.mkv", "max-depth=2"));
+
+        Set<String> entered = new TreeSet<>();
+        Set<String> visited = new TreeSet<>();
+        Set<String> excluded = new TreeSet<>();
+        new SequentialTreeTraversal().walk(tempDir, filter.wrap(tempDir, new TreeTraversal.Visitor() {
+            @Override
+            public boolean enterDirectory(Path dir, BasicFileAttributes attrs) {
+                entered.add(name(dir));
+                return true;
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attrs) {
+                visited.add(name(file));
+            }
+
+            @Override
+            public void leaveDirectory(Path dir) {
+                visited.add(name(dir) + "/");
+            }
+
+            @Override
+            public void visitFailed(Path path, IOException exc) {
+            }
+
+            @Override
+            public void visitExcluded(Path path) {
+                excluded.add(name(path));
+            }
+
+            private String name(Path path) {
+                return tempDir.relativize(path).toString().replace('\\', '/');
+            }
+        }));
+
+        assertEquals(Set.of("", "Show"), entered);
+        assertEquals(Set.of("notes.mkv", "Show/e01.mkv", "Show/Season 1/", "Show/", "/"), visited);
+        assertEquals(Set.of(".git", "Show/@eaDir", "Show/e01.nfo"), excluded);
+    }
+
+    @Test
+    void planRenames_dirsOnlyKeepsFilesAndTreatsExcludedNamesAsTaken(@TempDir Path tempDir) throws IOException {
+        Path release = Files.createDirectories(tempDir.resolve("Show [x]"));
+        Files.createFile(release.resolve("e01 [x].mkv"));
+        Files.createDirectories(release.resolve("Extras"));
+        Files.createDirectories(release.resolve("Extras [x]"));
+
+        try (FileRenamer renamer = new FileRenamer()) {
+            renamer.setWalkFilter(WalkFilter.NONE.withOverrides(List.of(), List.of("Extras"), null, WalkFilter.EntryType.DIRECTORIES));
+            RenamePlan plan = renamer.planRenames(tempDir.toString(), List.of("[x]"));
+
+            assertEquals(List.of(release), plan.operations().stream().map(RenamePlan.Operation::source).toList());
+            assertEquals(List.of(release.resolve("Extras [x]")), plan.rejections().stream().map(RenamePlan.Rejection::source).toList());
+            assertTrue(Files.exists(release.resolve("e01 [x].mkv")));
+        } finally {
+            cleanupAppFiles();
+        }
+    }
+}